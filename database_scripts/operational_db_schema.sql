@@ -16,7 +16,8 @@ DROP TABLE IF EXISTS departments;
 CREATE TABLE departments (
     department_id SERIAL PRIMARY KEY,
     department_name VARCHAR(100) NOT NULL UNIQUE,
-    dean_name VARCHAR(100)
+    dean_name VARCHAR(100),
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
 );
 
 -- Table: lecturers
@@ -26,6 +27,7 @@ CREATE TABLE lecturers (
     last_name VARCHAR(50) NOT NULL,
     email VARCHAR(100) NOT NULL UNIQUE,
     department_id INT NOT NULL,
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
     CONSTRAINT fk_department
         FOREIGN KEY(department_id) 
         REFERENCES departments(department_id)
@@ -40,6 +42,7 @@ CREATE TABLE courses (
     level VARCHAR(50) NOT NULL, -- e.g., 'Undergraduate', 'Postgraduate'
     tuition_fee NUMERIC(10, 2) NOT NULL,
     department_id INT NOT NULL,
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
     CONSTRAINT fk_department
         FOREIGN KEY(department_id) 
         REFERENCES departments(department_id)
@@ -54,7 +57,8 @@ CREATE TABLE students (
     gender VARCHAR(20),
     nationality VARCHAR(50),
     email VARCHAR(100) NOT NULL UNIQUE,
-    enrollment_date DATE NOT NULL
+    enrollment_date DATE NOT NULL,
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
 );
 
 -- Table: enrollments
@@ -68,6 +72,7 @@ CREATE TABLE enrollments (
     semester INT NOT NULL,
     final_grade NUMERIC(5, 2),
     status VARCHAR(20) NOT NULL DEFAULT 'Enrolled', -- e.g., Enrolled, Passed, Failed
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
     CONSTRAINT fk_student
         FOREIGN KEY(student_id) REFERENCES students(student_id),
     CONSTRAINT fk_course
@@ -91,4 +96,26 @@ CREATE TABLE payments (
 CREATE INDEX idx_lecturer_dept ON lecturers(department_id);
 CREATE INDEX idx_course_dept ON courses(department_id);
 CREATE INDEX idx_enrollment_student ON enrollments(student_id);
-CREATE INDEX idx_enrollment_course ON enrollments(course_id);
\ No newline at end of file
+CREATE INDEX idx_enrollment_course ON enrollments(course_id);
+
+-- Change tracking for the incremental ETL: last_updated is stamped on every
+-- UPDATE so the warehouse can extract only rows changed since its watermark.
+CREATE OR REPLACE FUNCTION set_last_updated() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.last_updated = now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_departments_last_updated BEFORE UPDATE ON departments FOR EACH ROW EXECUTE FUNCTION set_last_updated();
+CREATE TRIGGER trg_lecturers_last_updated BEFORE UPDATE ON lecturers FOR EACH ROW EXECUTE FUNCTION set_last_updated();
+CREATE TRIGGER trg_courses_last_updated BEFORE UPDATE ON courses FOR EACH ROW EXECUTE FUNCTION set_last_updated();
+CREATE TRIGGER trg_students_last_updated BEFORE UPDATE ON students FOR EACH ROW EXECUTE FUNCTION set_last_updated();
+CREATE TRIGGER trg_enrollments_last_updated BEFORE UPDATE ON enrollments FOR EACH ROW EXECUTE FUNCTION set_last_updated();
+
+CREATE INDEX idx_students_last_updated ON students(last_updated);
+CREATE INDEX idx_enrollments_last_updated ON enrollments(last_updated);
+
+-- payments are append-only; the ETL extracts past its payment_id high-water mark
+-- and re-reads a recent payment_date window for late-committing inserts
+CREATE INDEX idx_payments_payment_date ON payments(payment_date);
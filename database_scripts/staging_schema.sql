@@ -50,5 +50,20 @@ CREATE TABLE staging.stg_enrollments (
     academic_year INT,
     semester INT,
     final_grade NUMERIC(5, 2),
-    status VARCHAR(20)
-);
\ No newline at end of file
+    status VARCHAR(20),
+    department_id INT,          -- from the enrolled course, joined at extract time
+    tuition_fee NUMERIC(10, 2)  -- so incremental runs do not need every course staged
+);
+
+-- Lets the fact transform read stg_enrollments in enrollment_id range chunks per academic year
+CREATE INDEX idx_stg_enrollments_id ON staging.stg_enrollments(enrollment_id);
+CREATE INDEX idx_stg_enrollments_year ON staging.stg_enrollments(academic_year, enrollment_id);
+
+DROP TABLE IF EXISTS staging.stg_payments;
+CREATE TABLE staging.stg_payments (
+    payment_id INT,
+    student_id INT,
+    amount_paid NUMERIC(10, 2),
+    payment_date TIMESTAMP WITH TIME ZONE,
+    department_id INT           -- department of the student's latest enrollment, joined at extract time
+);
@@ -5,6 +5,17 @@
 -- analytical system (OLAP).
 
 -- Drop tables if they exist to ensure a clean slate on re-run
+DROP TABLE IF EXISTS Warehouse_Data_Version;
+DROP TABLE IF EXISTS Etl_Run_Checkpoint;
+DROP TABLE IF EXISTS Etl_Run_Step;
+DROP TABLE IF EXISTS Etl_Run;
+DROP TABLE IF EXISTS Etl_Watermark;
+DROP TABLE IF EXISTS Agg_Students_Lecturer_Term;
+DROP TABLE IF EXISTS Agg_Students_Department_Term;
+DROP TABLE IF EXISTS Agg_Enrollment_Department_Month;
+DROP TABLE IF EXISTS Agg_Enrollment_Course_Term;
+DROP TABLE IF EXISTS Fact_Payment_Unresolved;
+DROP TABLE IF EXISTS Fact_Payment;
 DROP TABLE IF EXISTS Fact_Enrollment;
 DROP TABLE IF EXISTS Dim_Date;
 DROP TABLE IF EXISTS Dim_Student;
@@ -28,7 +39,7 @@ CREATE TABLE Dim_Date (
 -- Dimension Table: Dim_Student
 CREATE TABLE Dim_Student (
     student_key SERIAL PRIMARY KEY, -- Surrogate Key
-    student_id INT NOT NULL,        -- Natural Key from operational DB
+    student_id INT NOT NULL UNIQUE, -- Natural Key from operational DB
     full_name VARCHAR(101) NOT NULL,
     gender VARCHAR(20),
     nationality VARCHAR(50),
@@ -38,7 +49,7 @@ CREATE TABLE Dim_Student (
 -- Dimension Table: Dim_Course
 CREATE TABLE Dim_Course (
     course_key SERIAL PRIMARY KEY, -- Surrogate Key
-    course_id INT NOT NULL,        -- Natural Key from operational DB
+    course_id INT NOT NULL UNIQUE, -- Natural Key from operational DB
     course_code VARCHAR(20) NOT NULL,
     course_title VARCHAR(150) NOT NULL,
     level VARCHAR(50),
@@ -48,7 +59,7 @@ CREATE TABLE Dim_Course (
 -- Dimension Table: Dim_Department
 CREATE TABLE Dim_Department (
     department_key SERIAL PRIMARY KEY, -- Surrogate Key
-    department_id INT NOT NULL,        -- Natural Key from operational DB
+    department_id INT NOT NULL UNIQUE, -- Natural Key from operational DB
     department_name VARCHAR(100) NOT NULL,
     dean_name VARCHAR(100)
 );
@@ -56,16 +67,23 @@ CREATE TABLE Dim_Department (
 -- Dimension Table: Dim_Lecturer
 CREATE TABLE Dim_Lecturer (
     lecturer_key SERIAL PRIMARY KEY, -- Surrogate Key
-    lecturer_id INT NOT NULL,        -- Natural Key from operational DB
+    lecturer_id INT NOT NULL UNIQUE, -- Natural Key from operational DB
     full_name VARCHAR(101) NOT NULL,
     email VARCHAR(100)
 );
 
 -- Fact Table: Fact_Enrollment
+-- Range-partitioned on date_key by academic year: fact_enrollment_ayYYYY holds
+-- [YYYY0901, YYYY+1 0901), i.e. both semesters of YYYY/YYYY+1. The ETL rebuilds only the
+-- years an ETL run touches, each as a standalone table that is then swapped in with
+-- DETACH / ATTACH PARTITION, and reports bounded on date_key only scan the years they
+-- need. The dimension keys are resolved at load time and carry no foreign keys, which
+-- would otherwise have to be re-validated on every attach.
 CREATE TABLE Fact_Enrollment (
-    enrollment_fact_id BIGSERIAL PRIMARY KEY,
-    -- Foreign keys to dimensions
-    date_key INT NOT NULL,
+    enrollment_fact_id BIGSERIAL NOT NULL,
+    enrollment_id INT NOT NULL, -- Natural Key from operational DB
+    -- Keys to dimensions
+    date_key INT NOT NULL,      -- partition key
     student_key INT NOT NULL,
     course_key INT NOT NULL,
     department_key INT NOT NULL,
@@ -75,15 +93,143 @@ CREATE TABLE Fact_Enrollment (
     tuition_fee NUMERIC(10, 2),
     enrollment_count INT NOT NULL DEFAULT 1,
     is_passed INT NOT NULL, -- 1 for true, 0 for false
-    -- Constraints to link to dimensions
-    CONSTRAINT fk_dim_date FOREIGN KEY (date_key) REFERENCES Dim_Date(date_key),
-    CONSTRAINT fk_dim_student FOREIGN KEY (student_key) REFERENCES Dim_Student(student_key),
-    CONSTRAINT fk_dim_course FOREIGN KEY (course_key) REFERENCES Dim_Course(course_key),
-    CONSTRAINT fk_dim_department FOREIGN KEY (department_key) REFERENCES Dim_Department(department_key),
-    CONSTRAINT fk_dim_lecturer FOREIGN KEY (lecturer_key) REFERENCES Dim_Lecturer(lecturer_key)
-);
+    PRIMARY KEY (enrollment_id, date_key)
+) PARTITION BY RANGE (date_key);
 
--- Index on the fact table's foreign keys is crucial for query performance
+-- Index on the fact table's keys is crucial for query performance; each partition
+-- gets its own copy, built before the partition is attached
 CREATE INDEX idx_fact_date_key ON Fact_Enrollment(date_key);
 CREATE INDEX idx_fact_student_key ON Fact_Enrollment(student_key);
-CREATE INDEX idx_fact_course_key ON Fact_Enrollment(course_key);
\ No newline at end of file
+CREATE INDEX idx_fact_course_key ON Fact_Enrollment(course_key);
+CREATE INDEX idx_fact_department_key ON Fact_Enrollment(department_key);
+
+-- Fact Table: Fact_Payment (cash collected, one row per operational payment)
+-- Range-partitioned by calendar month of payment_date (UTC bounds). The ETL creates the
+-- fact_payment_yYYYYmMM partitions as payments arrive, and reports filtering on a
+-- payment_date range only scan the months they cover. There are no foreign keys so
+-- the dimensions can be truncated or swapped without touching the payment history;
+-- the keys are resolved by joining the dimensions at load time.
+CREATE TABLE Fact_Payment (
+    payment_id INT NOT NULL,           -- Natural Key, the incremental high-water mark
+    payment_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    date_key INT NOT NULL,             -- UTC day of payment_date
+    student_key INT NOT NULL,
+    department_key INT,                -- student's latest enrolled department, NULL if never enrolled
+    amount_paid NUMERIC(10, 2) NOT NULL,
+    PRIMARY KEY (payment_id, payment_date)
+) PARTITION BY RANGE (payment_date);
+
+CREATE INDEX idx_fact_payment_student_key ON Fact_Payment(student_key);
+
+-- Payments the last load staged but could not key, because their student or day had no
+-- dimension row yet. INCREMENTAL runs extract again from the lowest of them, so they are
+-- loaded as soon as the dimension catches up instead of falling behind the high-water mark.
+CREATE TABLE Fact_Payment_Unresolved (
+    payment_id INT NOT NULL,
+    payment_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (payment_id, payment_date)
+);
+
+-- ETL control table: high-water mark of operational last_updated per source table
+CREATE TABLE Etl_Watermark (
+    source_table VARCHAR(50) PRIMARY KEY,
+    last_extracted_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- ETL run ledger. Every run records its steps and the chunks it has committed; a failed
+-- FULL or INCREMENTAL run is resumed by the next run in the same mode, which skips the
+-- steps that succeeded and the checkpoints already committed.
+CREATE TABLE Etl_Run (
+    run_id BIGSERIAL PRIMARY KEY,
+    mode VARCHAR(20) NOT NULL,
+    scope VARCHAR(50) NOT NULL,        -- 'all', or the single step an admin triggered
+    status VARCHAR(20) NOT NULL,       -- RUNNING, SUCCEEDED, FAILED
+    attempts INT NOT NULL DEFAULT 1,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at TIMESTAMP WITH TIME ZONE,
+    error TEXT
+);
+
+CREATE TABLE Etl_Run_Step (
+    run_id BIGINT NOT NULL REFERENCES Etl_Run(run_id) ON DELETE CASCADE,
+    step VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    rows_written BIGINT,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at TIMESTAMP WITH TIME ZONE,
+    error TEXT,
+    PRIMARY KEY (run_id, step)
+);
+
+-- Written in the same transaction as the work it records, e.g. 'chunk:2024:1-50000'
+CREATE TABLE Etl_Run_Checkpoint (
+    run_id BIGINT NOT NULL,
+    step VARCHAR(50) NOT NULL,
+    checkpoint VARCHAR(100) NOT NULL,
+    rows_written BIGINT NOT NULL,
+    extracted_at TIMESTAMP WITH TIME ZONE,  -- source clock, on the 'extract' checkpoint
+    committed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    PRIMARY KEY (run_id, step, checkpoint),
+    FOREIGN KEY (run_id, step) REFERENCES Etl_Run_Step(run_id, step) ON DELETE CASCADE
+);
+
+-- Version of the data the reports read: one row, bumped after every successful ETL run.
+-- Report responses carry it in their ETag, so clients revalidate instead of re-downloading.
+CREATE TABLE Warehouse_Data_Version (
+    singleton BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (singleton),
+    version BIGINT NOT NULL,
+    run_id BIGINT,                     -- the Etl_Run that published it
+    published_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- Rollups rebuilt from Fact_Enrollment at the end of every ETL run. The reports read
+-- these instead of the fact table whenever their grain is coarse enough. Averages are
+-- kept as sum + count so they can be re-aggregated to any coarser grain.
+
+-- Rollup: department x calendar month
+CREATE TABLE Agg_Enrollment_Department_Month (
+    department_key INT NOT NULL,
+    year INT NOT NULL,
+    month INT NOT NULL,
+    month_name VARCHAR(10) NOT NULL,
+    enrollment_count BIGINT NOT NULL,
+    passed_count BIGINT NOT NULL,
+    passed_grade_sum NUMERIC(15, 2),     -- final_grade summed over passed rows
+    passed_grade_count BIGINT NOT NULL,  -- passed rows that have a final_grade
+    tuition_sum NUMERIC(15, 2),
+    PRIMARY KEY (department_key, year, month)
+);
+
+-- Rollup: course x academic term (only graded rows, as used by the HOD course report)
+CREATE TABLE Agg_Enrollment_Course_Term (
+    course_key INT NOT NULL,
+    department_key INT NOT NULL,
+    academic_year VARCHAR(10) NOT NULL,
+    semester VARCHAR(20) NOT NULL,
+    graded_count BIGINT NOT NULL,
+    graded_passed_count BIGINT NOT NULL,
+    grade_sum NUMERIC(15, 2),
+    PRIMARY KEY (course_key, department_key, academic_year, semester)
+);
+
+-- Rollup: distinct students per department x academic term, as a HyperLogLog sketch
+-- (see HyperLogLog.java; at most about 4 KB each, far less while sparse). Sketches merge,
+-- so the distinct students over any set of terms and departments come from these rows alone.
+CREATE TABLE Agg_Students_Department_Term (
+    department_key INT NOT NULL,
+    academic_year VARCHAR(10) NOT NULL,
+    semester VARCHAR(20) NOT NULL,
+    students BYTEA NOT NULL,
+    PRIMARY KEY (department_key, academic_year, semester)
+);
+
+-- Rollup: distinct students per lecturer x course department x academic term, same sketches
+CREATE TABLE Agg_Students_Lecturer_Term (
+    lecturer_key INT NOT NULL,
+    department_key INT NOT NULL,
+    academic_year VARCHAR(10) NOT NULL,
+    semester VARCHAR(20) NOT NULL,
+    students BYTEA NOT NULL,
+    PRIMARY KEY (lecturer_key, department_key, academic_year, semester)
+);
@@ -0,0 +1,49 @@
+package com.university.warehouse_etl.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The per-day transform behind loadDateDimension: date key, academic year and semester.
+// One operation covers `rows` consecutive days, so rows/s = score x rows.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DateDimensionBenchmark {
+
+	private static final long FIRST_DAY = LocalDate.of(2020, 1, 1).toEpochDay();
+
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	int rows;
+
+	@Benchmark
+	public void dateKeys(Blackhole blackhole) {
+		for (int i = 0; i < rows; i++) {
+			blackhole.consume(EtlTransforms.dateKey(LocalDate.ofEpochDay(FIRST_DAY + i)));
+		}
+	}
+
+	@Benchmark
+	public void dateRows(Blackhole blackhole) {
+		for (int i = 0; i < rows; i++) {
+			LocalDate date = LocalDate.ofEpochDay(FIRST_DAY + i);
+			blackhole.consume(EtlTransforms.dateKey(date));
+			blackhole.consume(EtlTransforms.academicYear(date));
+			blackhole.consume(EtlTransforms.semester(date));
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.university.warehouse_etl.service;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The per-enrollment work in loadFactChunk without the ResultSet: four surrogate-key
+// lookups against compacted IntKeyMaps (as SurrogateKeyCache publishes them), the
+// missing-key check, the date key and passed flag, and the row handed to batchUpdate.
+// About 1% of students are unknown so the skip path is exercised too.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FactMappingBenchmark {
+
+	private static final int COURSES = 2000;
+	private static final int LECTURERS = 500;
+	private static final int DEPARTMENTS = 20;
+	private static final String[] STATUSES = { "Passed", "Failed", "Enrolled" };
+
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	int rows;
+
+	private IntKeyMap studentKeys;
+	private IntKeyMap courseKeys;
+	private IntKeyMap lecturerKeys;
+	private IntKeyMap departmentKeys;
+
+	private int[] studentIds;
+	private int[] courseIds;
+	private int[] lecturerIds;
+	private int[] departmentIds;
+	private int[] academicYears;
+	private int[] semesters;
+	private String[] statuses;
+	private BigDecimal tuitionFee;
+
+	@Setup
+	public void generate() {
+		// Roughly four enrollments per student, like the operational data
+		int students = Math.max(1000, rows / 4);
+		studentKeys = keys(students);
+		courseKeys = keys(COURSES);
+		lecturerKeys = keys(LECTURERS);
+		departmentKeys = keys(DEPARTMENTS);
+
+		SplittableRandom random = new SplittableRandom(42);
+		studentIds = new int[rows];
+		courseIds = new int[rows];
+		lecturerIds = new int[rows];
+		departmentIds = new int[rows];
+		academicYears = new int[rows];
+		semesters = new int[rows];
+		statuses = new String[rows];
+		for (int i = 0; i < rows; i++) {
+			studentIds[i] = 1 + random.nextInt(students + students / 100);
+			courseIds[i] = 1 + random.nextInt(COURSES);
+			lecturerIds[i] = 1 + random.nextInt(LECTURERS);
+			departmentIds[i] = 1 + random.nextInt(DEPARTMENTS);
+			academicYears[i] = 2020 + random.nextInt(6);
+			semesters[i] = 1 + random.nextInt(2);
+			statuses[i] = STATUSES[random.nextInt(STATUSES.length)];
+		}
+		tuitionFee = new BigDecimal("9250.00");
+	}
+
+	// Natural ids 1..n mapped to surrogate keys 1..n in load order
+	private static IntKeyMap keys(int size) {
+		IntKeyMap map = new IntKeyMap(size);
+		for (int id = 1; id <= size; id++) {
+			map.put(id, id);
+		}
+		return map.compact();
+	}
+
+	@Benchmark
+	public int keyLookups() {
+		int sum = 0;
+		for (int i = 0; i < rows; i++) {
+			sum += studentKeys.get(studentIds[i]) + courseKeys.get(courseIds[i])
+				+ lecturerKeys.get(lecturerIds[i]) + departmentKeys.get(departmentIds[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int factRows(Blackhole blackhole) {
+		int skipped = 0;
+		for (int i = 0; i < rows; i++) {
+			int studentKey = studentKeys.get(studentIds[i]);
+			int courseKey = courseKeys.get(courseIds[i]);
+			int lecturerKey = lecturerKeys.get(lecturerIds[i]);
+			int departmentKey = departmentKeys.get(departmentIds[i]);
+			if (studentKey == IntKeyMap.MISSING || courseKey == IntKeyMap.MISSING || lecturerKey == IntKeyMap.MISSING || departmentKey == IntKeyMap.MISSING) {
+				skipped++;
+				continue;
+			}
+			int dateKey = EtlTransforms.enrollmentDateKey(academicYears[i], semesters[i]);
+			int isPassed = EtlTransforms.passedFlag(statuses[i]);
+			blackhole.consume(new Object[]{ i, dateKey, studentKey, courseKey, departmentKey, lecturerKey, 65.5, tuitionFee, 1, isPassed });
+		}
+		return skipped;
+	}
+}
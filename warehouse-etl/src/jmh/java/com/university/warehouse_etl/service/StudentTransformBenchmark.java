@@ -0,0 +1,84 @@
+package com.university.warehouse_etl.service;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The per-student transform behind loadStudents: full name and age group.
+// Names and birthdays come from small pools so the input itself stays compact at 10M rows.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StudentTransformBenchmark {
+
+	private static final int POOL_SIZE = 4096;
+
+	@Param({ "10000", "100000", "1000000", "10000000" })
+	int rows;
+
+	private String[] firstNames;
+	private String[] lastNames;
+	private LocalDate[] datesOfBirth;
+	private LocalDate today;
+
+	@Setup
+	public void generate() {
+		SplittableRandom random = new SplittableRandom(42);
+		String[] firstPool = new String[POOL_SIZE];
+		String[] lastPool = new String[POOL_SIZE];
+		LocalDate[] birthdayPool = new LocalDate[POOL_SIZE];
+		LocalDate oldest = LocalDate.of(1990, 1, 1);
+		for (int i = 0; i < POOL_SIZE; i++) {
+			firstPool[i] = "First" + i;
+			lastPool[i] = "Last" + i;
+			birthdayPool[i] = oldest.plusDays(random.nextInt(365 * 17));
+		}
+		firstNames = new String[rows];
+		lastNames = new String[rows];
+		datesOfBirth = new LocalDate[rows];
+		for (int i = 0; i < rows; i++) {
+			firstNames[i] = firstPool[random.nextInt(POOL_SIZE)];
+			lastNames[i] = lastPool[random.nextInt(POOL_SIZE)];
+			datesOfBirth[i] = birthdayPool[random.nextInt(POOL_SIZE)];
+		}
+		today = LocalDate.of(2025, 6, 15);
+	}
+
+	@Benchmark
+	public void fullNames(Blackhole blackhole) {
+		for (int i = 0; i < rows; i++) {
+			blackhole.consume(EtlTransforms.fullName(firstNames[i], lastNames[i]));
+		}
+	}
+
+	@Benchmark
+	public void ageGroups(Blackhole blackhole) {
+		for (int i = 0; i < rows; i++) {
+			blackhole.consume(EtlTransforms.ageGroup(datesOfBirth[i], today));
+		}
+	}
+
+	// Full row as loadStudents hands it to the unnest() insert
+	@Benchmark
+	public void studentRows(Blackhole blackhole) {
+		for (int i = 0; i < rows; i++) {
+			blackhole.consume(new Object[]{ i, EtlTransforms.fullName(firstNames[i], lastNames[i]), "F", "UK", EtlTransforms.ageGroup(datesOfBirth[i], today) });
+		}
+	}
+}
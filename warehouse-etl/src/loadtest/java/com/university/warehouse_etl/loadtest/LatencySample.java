@@ -0,0 +1,45 @@
+package com.university.warehouse_etl.loadtest;
+
+import java.util.Arrays;
+
+// Response times of one endpoint, collected by every simulated user. Percentiles are
+// nearest-rank over the exact samples; a benchmark run is small enough to keep them all.
+public class LatencySample {
+
+	public record Summary(int requests, int errors, double meanMillis, double p50Millis, double p90Millis, double p95Millis, double p99Millis, double maxMillis) {}
+
+	private long[] nanos = new long[1024];
+	private int count;
+	private int errors;
+
+	public synchronized void record(long elapsedNanos, boolean ok) {
+		if (!ok) {
+			errors++;
+			return;
+		}
+		if (count == nanos.length) {
+			nanos = Arrays.copyOf(nanos, count * 2);
+		}
+		nanos[count++] = elapsedNanos;
+	}
+
+	public synchronized Summary summarize() {
+		long[] sorted = Arrays.copyOf(nanos, count);
+		Arrays.sort(sorted);
+		double mean = count == 0 ? 0 : Arrays.stream(sorted).average().orElse(0) / 1e6;
+		return new Summary(count + errors, errors, round(mean), percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 95),
+			percentile(sorted, 99), count == 0 ? 0 : round(sorted[count - 1] / 1e6));
+	}
+
+	static double percentile(long[] sorted, double percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percent / 100 * sorted.length);
+		return round(sorted[Math.max(0, rank - 1)] / 1e6);
+	}
+
+	private static double round(double millis) {
+		return Math.round(millis * 1000) / 1000.0;
+	}
+}
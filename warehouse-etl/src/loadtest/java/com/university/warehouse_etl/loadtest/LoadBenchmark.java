@@ -0,0 +1,243 @@
+package com.university.warehouse_etl.loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.warehouse_etl.WarehouseEtlApplication;
+import com.university.warehouse_etl.loadtest.LatencySample.Summary;
+import com.university.warehouse_etl.loadtest.SyntheticDataGenerator.Scale;
+import com.university.warehouse_etl.loadtest.SyntheticDataGenerator.TableLoad;
+import com.university.warehouse_etl.scheduler.EtlScheduler;
+import com.university.warehouse_etl.service.EtlRunLedger;
+import com.university.warehouse_etl.service.EtlRunLedger.RunSummary;
+import com.zaxxer.hikari.HikariDataSource;
+
+// End-to-end benchmark against a local Postgres: boots the application with the
+// "loadtest" profile on a random port, fills the operational DB with synthetic data,
+// times one ETL run step by step (from the run ledger), then has concurrent simulated
+// users log in and hit the VC/ADMIN report endpoints, and writes everything as JSON.
+//
+//   mvn -Ploadtest -DskipTests verify -Dloadtest.args="--app.loadtest.enrollments=1000000 --app.loadtest.users=32"
+//
+// Settings are the app.loadtest.* properties (see application-loadtest.properties).
+public class LoadBenchmark {
+
+	private static final Logger log = LoggerFactory.getLogger(LoadBenchmark.class);
+
+	private static final List<String> REPORTS = List.of(
+		"/api/reports/dashboard",
+		"/api/reports/department-performance",
+		"/api/reports/enrollment-trend",
+		"/api/reports/student-diversity",
+		"/api/reports/tuition-revenue",
+		"/api/reports/yoy-enrollment",
+		"/api/reports/revenue/collected-vs-billed",
+		"/api/reports/revenue/monthly");
+
+	private static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+	public record Settings(long seed, long enrollments, int academicYears, int lastAcademicYear, boolean generated, String etlMode,
+						   int users, int requestsPerUser, int warmupRequestsPerUser, String cacheType) {}
+
+	public record Platform(String javaVersion, int processors, long maxHeapMb, String postgresVersion) {}
+
+	public record EtlStep(String step, String status, Long rows, Long millis) {}
+
+	public record EtlRun(long runId, String status, long millis, List<EtlStep> steps) {}
+
+	public record Report(OffsetDateTime startedAt, Settings settings, Platform platform, Map<String, TableLoad> generator,
+						 EtlRun etl, double reportThroughputPerSecond, Map<String, Summary> reports) {}
+
+	public static void main(String[] args) throws Exception {
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(WarehouseEtlApplication.class)
+			.profiles("loadtest")
+			.run(args);
+		int exitCode = 0;
+		try {
+			new LoadBenchmark().run(context);
+		} catch (Exception e) {
+			log.error("Load benchmark failed.", e);
+			exitCode = 1;
+		} finally {
+			SpringApplication.exit(context);
+		}
+		System.exit(exitCode);
+	}
+
+	private void run(ConfigurableApplicationContext context) throws Exception {
+		Environment env = context.getEnvironment();
+		JdbcTemplate operational = context.getBean("operationalJdbcTemplate", JdbcTemplate.class);
+		OffsetDateTime startedAt = OffsetDateTime.now();
+
+		LocalDate today = LocalDate.now();
+		Settings settings = new Settings(
+			env.getProperty("app.loadtest.seed", Long.class, 42L),
+			env.getProperty("app.loadtest.enrollments", Long.class, 100_000L),
+			env.getProperty("app.loadtest.academic-years", Integer.class, 5),
+			env.getProperty("app.loadtest.last-academic-year", Integer.class, today.getMonthValue() >= 9 ? today.getYear() : today.getYear() - 1),
+			env.getProperty("app.loadtest.generate", Boolean.class, true),
+			env.getProperty("app.etl.mode", "FULL"),
+			env.getProperty("app.loadtest.users", Integer.class, 16),
+			env.getProperty("app.loadtest.requests-per-user", Integer.class, 50),
+			env.getProperty("app.loadtest.warmup-requests-per-user", Integer.class, 5),
+			env.getProperty("spring.cache.type", "default"));
+		Platform platform = new Platform(System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+			Runtime.getRuntime().maxMemory() / (1024 * 1024), operational.queryForObject("SHOW server_version", String.class));
+
+		Map<String, TableLoad> generator = Map.of();
+		if (settings.generated()) {
+			requireLocal(context.getBean("operationalDataSource", HikariDataSource.class), env.getProperty("app.loadtest.allow-remote", Boolean.class, false));
+			generator = new SyntheticDataGenerator(operational, settings.seed(), Scale.of(settings.enrollments(), settings.academicYears()),
+				settings.lastAcademicYear(), env.getProperty("app.etl.copy.buffer-bytes", Integer.class, 65536)).generate();
+		}
+
+		EtlRun etl = runEtl(context);
+
+		String username = env.getProperty("app.loadtest.username", "loadtest");
+		String password = env.getProperty("app.loadtest.password", "loadtest");
+		ensureUser(operational, context.getBean(PasswordEncoder.class), username, password);
+		String baseUrl = "http://localhost:" + env.getProperty("local.server.port");
+		Map<String, LatencySample> samples = new LinkedHashMap<>();
+		REPORTS.forEach(path -> samples.put(path, new LatencySample()));
+		long reportStart = System.nanoTime();
+		simulateUsers(baseUrl, username, password, settings, samples);
+		double seconds = (System.nanoTime() - reportStart) / 1e9;
+
+		Map<String, Summary> reports = new LinkedHashMap<>();
+		samples.forEach((path, sample) -> reports.put(path, sample.summarize()));
+		long measured = (long) settings.users() * settings.requestsPerUser();
+		Report report = new Report(startedAt, settings, platform, generator, etl, Math.round(measured / seconds * 10) / 10.0, reports);
+
+		Path output = Path.of(env.getProperty("app.loadtest.report", "target/loadtest-report.json"));
+		if (output.getParent() != null) {
+			Files.createDirectories(output.getParent());
+		}
+		context.getBean(ObjectMapper.class).writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+		log.info("Load benchmark report written to {}.", output.toAbsolutePath());
+	}
+
+	// Generating truncates the operational tables, so it only ever runs against a local database
+	private static void requireLocal(HikariDataSource dataSource, boolean allowRemote) {
+		String url = dataSource.getJdbcUrl();
+		boolean local = url.contains("//localhost") || url.contains("//127.0.0.1") || url.contains("//[::1]");
+		if (!local && !allowRemote) {
+			throw new IllegalStateException("Refusing to replace the data of a non-local operational DB (" + url + "); set app.loadtest.allow-remote=true to override");
+		}
+	}
+
+	// One run in the configured mode; step timings come from the run ledger
+	private static EtlRun runEtl(ConfigurableApplicationContext context) {
+		long start = System.nanoTime();
+		context.getBean(EtlScheduler.class).runFullEtlProcess();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		RunSummary run = context.getBean(EtlRunLedger.class).recent(1).get(0);
+		List<EtlStep> steps = new ArrayList<>();
+		for (EtlRunLedger.StepSummary step : run.steps()) {
+			Long stepMillis = step.startedAt() == null || step.finishedAt() == null ? null : Duration.between(step.startedAt(), step.finishedAt()).toMillis();
+			steps.add(new EtlStep(step.step(), step.status(), step.rowsWritten(), stepMillis));
+		}
+		log.info("ETL run {} {} in {} ms.", run.runId(), run.status(), millis);
+		return new EtlRun(run.runId(), run.status(), millis, steps);
+	}
+
+	private static void ensureUser(JdbcTemplate operational, PasswordEncoder encoder, String username, String password) {
+		operational.update("INSERT INTO app_user (username, password) VALUES (?, ?) ON CONFLICT (username) DO UPDATE SET password = EXCLUDED.password, enabled = TRUE",
+			username, encoder.encode(password));
+		operational.update("INSERT INTO user_roles (user_id, role_id) SELECT u.user_id, r.role_id FROM app_user u, app_role r " +
+			"WHERE u.username = ? AND r.name IN ('ROLE_VC', 'ROLE_ADMIN') ON CONFLICT DO NOTHING", username);
+	}
+
+	// Every user logs in with its own session, then cycles through the reports starting at a
+	// different one; warm-up requests are not recorded. All users start at the same moment.
+	private static void simulateUsers(String baseUrl, String username, String password, Settings settings, Map<String, LatencySample> samples) throws Exception {
+		ExecutorService users = Executors.newFixedThreadPool(settings.users());
+		try {
+			CountDownLatch ready = new CountDownLatch(settings.users());
+			CountDownLatch go = new CountDownLatch(1);
+			List<Future<?>> running = new ArrayList<>();
+			for (int user = 0; user < settings.users(); user++) {
+				int offset = user;
+				running.add(users.submit(() -> {
+					HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).connectTimeout(Duration.ofSeconds(10)).build();
+					login(client, baseUrl, username, password);
+					ready.countDown();
+					go.await();
+					int total = settings.warmupRequestsPerUser() + settings.requestsPerUser();
+					for (int i = 0; i < total; i++) {
+						String path = REPORTS.get((offset + i) % REPORTS.size());
+						HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofMinutes(5)).GET().build();
+						long start = System.nanoTime();
+						boolean ok;
+						try {
+							ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+						} catch (IOException e) {
+							ok = false;
+						}
+						if (i >= settings.warmupRequestsPerUser()) {
+							samples.get(path).record(System.nanoTime() - start, ok);
+						}
+					}
+					return null;
+				}));
+			}
+			ready.await();
+			log.info("{} users logged in, measuring {} requests each.", settings.users(), settings.requestsPerUser());
+			go.countDown();
+			for (Future<?> user : running) {
+				user.get();
+			}
+		} finally {
+			users.shutdownNow();
+		}
+	}
+
+	// Form login the way a browser does it: fetch the CSRF token from the login page, then post
+	private static void login(HttpClient client, String baseUrl, String username, String password) throws IOException, InterruptedException {
+		String page = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login")).GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+		Matcher token = CSRF_TOKEN.matcher(page);
+		if (!token.find()) {
+			throw new IllegalStateException("No CSRF token on the login page");
+		}
+		String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8) +
+					  "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8) +
+					  "&_csrf=" + URLEncoder.encode(token.group(1), StandardCharsets.UTF_8);
+		HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+			.header("Content-Type", "application/x-www-form-urlencoded")
+			.POST(HttpRequest.BodyPublishers.ofString(form)).build(), HttpResponse.BodyHandlers.discarding());
+		String location = response.headers().firstValue("Location").orElse("");
+		if (response.statusCode() != 302 || location.contains("error")) {
+			throw new IllegalStateException("Login as " + username + " failed (" + response.statusCode() + " " + location + ")");
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.university.warehouse_etl.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Fills the operational schema with synthetic data at a given scale, streamed in with
+// COPY ... FROM STDIN. The output depends only on the seed, the scale and the last
+// academic year: every table draws from its own random stream, and the values that
+// link tables (a student's first year, a course's department) are derived from ids,
+// so nothing but the current row is ever held in memory - 50M enrollments included.
+//
+// Foreign keys are dropped for the load and added back afterwards, which validates
+// each one in a single scan instead of one trigger call per row.
+public class SyntheticDataGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+	public static final long MIN_ENROLLMENTS = 10_000;
+	public static final long MAX_ENROLLMENTS = 50_000_000;
+
+	private static final List<String> TABLES = List.of("departments", "lecturers", "courses", "students", "enrollments", "payments");
+
+	private static final String[][] DEPARTMENTS = {
+		{ "Computer Science", "CS" }, { "Business Administration", "BA" }, { "Fine Arts", "FA" },
+		{ "Mathematics", "MA" }, { "Physics", "PH" }, { "Chemistry", "CH" },
+		{ "Biology", "BI" }, { "History", "HI" }, { "Economics", "EC" },
+		{ "Law", "LW" }, { "Medicine", "MD" }, { "Engineering", "EN" } };
+	private static final String[] FIRST_NAMES = { "James", "Maria", "Chen", "Fatima", "David", "Emily", "Aisha", "Lucas",
+		"Sofia", "Kenji", "Amara", "Oliver", "Priya", "Mateo", "Hana", "Noah", "Zara", "Ivan", "Leila", "Tomas" };
+	private static final String[] LAST_NAMES = { "Smith", "Garcia", "Wei", "Al-Fassi", "Jones", "White", "Okafor", "Silva",
+		"Rossi", "Tanaka", "Mensah", "Brown", "Patel", "Lopez", "Kim", "Muller", "Haddad", "Petrov", "Nguyen", "Novak" };
+	private static final String[] GENDERS = { "Male", "Female", "Non-binary" };
+	private static final String[] NATIONALITIES = { "USA", "Spain", "China", "Morocco", "UK", "Canada", "Nigeria", "Brazil",
+		"India", "Japan", "Germany", "Ghana" };
+	private static final String[] COURSE_TOPICS = { "Foundations of", "Advanced", "Applied", "Topics in", "Research Methods in", "Studio" };
+
+	// Row counts derived from the enrollment count, shaped like the sample data:
+	// about four enrollments per student and a few thousand per course
+	public record Scale(long enrollments, int departments, int lecturersPerDepartment, int coursesPerDepartment, int students, long payments, int academicYears) {
+
+		public static Scale of(long enrollments, int academicYears) {
+			if (enrollments < MIN_ENROLLMENTS || enrollments > MAX_ENROLLMENTS) {
+				throw new IllegalArgumentException("Enrollments must be between " + MIN_ENROLLMENTS + " and " + MAX_ENROLLMENTS + ": " + enrollments);
+			}
+			if (academicYears < 1) {
+				throw new IllegalArgumentException("At least one academic year is needed: " + academicYears);
+			}
+			int departments = DEPARTMENTS.length;
+			int lecturersPerDepartment = (int) Math.max(3, enrollments / (departments * 5_000L));
+			int coursesPerDepartment = (int) Math.max(5, enrollments / (departments * 2_500L));
+			int students = (int) Math.max(100, enrollments / 4);
+			return new Scale(enrollments, departments, lecturersPerDepartment, coursesPerDepartment, students, enrollments / 4, academicYears);
+		}
+
+		public int lecturers() {
+			return departments * lecturersPerDepartment;
+		}
+
+		public int courses() {
+			return departments * coursesPerDepartment;
+		}
+	}
+
+	public record TableLoad(long rows, long millis) {}
+
+	private final JdbcTemplate operationalJdbcTemplate;
+	private final long seed;
+	private final Scale scale;
+	private final int lastAcademicYear;
+	private final int bufferSize;
+
+	public SyntheticDataGenerator(JdbcTemplate operationalJdbcTemplate, long seed, Scale scale, int lastAcademicYear, int bufferSize) {
+		this.operationalJdbcTemplate = operationalJdbcTemplate;
+		this.seed = seed;
+		this.scale = scale;
+		this.lastAcademicYear = lastAcademicYear;
+		this.bufferSize = bufferSize;
+	}
+
+	// Replaces everything in the operational tables; returns rows and time per table in load order
+	public Map<String, TableLoad> generate() {
+		log.info("Generating {} (seed {}, academic years up to {}).", scale, seed, lastAcademicYear);
+		List<Map<String, Object>> foreignKeys = operationalJdbcTemplate.queryForList(
+			"SELECT conrelid::regclass::text AS table_name, conname AS name, pg_get_constraintdef(oid) AS definition FROM pg_constraint " +
+			"WHERE contype = 'f' AND conrelid = ANY (ARRAY['" + String.join("', '", TABLES) + "']::regclass[])");
+		for (Map<String, Object> foreignKey : foreignKeys) {
+			operationalJdbcTemplate.execute("ALTER TABLE " + foreignKey.get("table_name") + " DROP CONSTRAINT " + foreignKey.get("name"));
+		}
+		operationalJdbcTemplate.execute("TRUNCATE TABLE " + String.join(", ", TABLES) + " RESTART IDENTITY");
+
+		Map<String, TableLoad> loads = new LinkedHashMap<>();
+		long start;
+		try {
+			loads.put("departments", copy("departments", "department_id, department_name, dean_name", this::writeDepartments));
+			loads.put("lecturers", copy("lecturers", "lecturer_id, first_name, last_name, email, department_id", this::writeLecturers));
+			loads.put("courses", copy("courses", "course_id, course_code, course_title, credits, level, tuition_fee, department_id", this::writeCourses));
+			loads.put("students", copy("students", "student_id, first_name, last_name, date_of_birth, gender, nationality, email, enrollment_date", this::writeStudents));
+			loads.put("enrollments", copy("enrollments", "enrollment_id, student_id, course_id, lecturer_id, academic_year, semester, final_grade, status", this::writeEnrollments));
+			loads.put("payments", copy("payments", "payment_id, student_id, amount_paid, payment_date, description", this::writePayments));
+		} catch (RuntimeException e) {
+			// Leave empty tables behind so the keys below can be added back
+			operationalJdbcTemplate.execute("TRUNCATE TABLE " + String.join(", ", TABLES) + " RESTART IDENTITY");
+			throw e;
+		} finally {
+			start = System.nanoTime();
+			for (Map<String, Object> foreignKey : foreignKeys) {
+				operationalJdbcTemplate.execute("ALTER TABLE " + foreignKey.get("table_name") + " ADD CONSTRAINT " + foreignKey.get("name") + " " + foreignKey.get("definition"));
+			}
+		}
+		for (String table : TABLES) {
+			String idColumn = table.substring(0, table.length() - 1) + "_id";
+			// Rows were copied with explicit ids, so the SERIAL sequences are still at 1
+			operationalJdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, ?), GREATEST((SELECT max(" + idColumn + ") FROM " + table + "), 1))",
+				Long.class, table, idColumn);
+			operationalJdbcTemplate.execute("ANALYZE " + table);
+		}
+		log.info("Restored {} foreign keys and analyzed in {} ms.", foreignKeys.size(), (System.nanoTime() - start) / 1_000_000);
+		return loads;
+	}
+
+	// --- Rows, one random stream per table ---
+
+	private void writeDepartments(Rows out) throws IOException {
+		SplittableRandom random = random(1);
+		for (int id = 1; id <= scale.departments(); id++) {
+			out.row(id, DEPARTMENTS[id - 1][0], "Dr. " + pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES));
+		}
+	}
+
+	private void writeLecturers(Rows out) throws IOException {
+		SplittableRandom random = random(2);
+		for (int id = 1; id <= scale.lecturers(); id++) {
+			String first = pick(random, FIRST_NAMES);
+			String last = pick(random, LAST_NAMES);
+			out.row(id, first, last, email(first, last, id, "staff"), departmentOf(id));
+		}
+	}
+
+	private void writeCourses(Rows out) throws IOException {
+		SplittableRandom random = random(3);
+		for (int id = 1; id <= scale.courses(); id++) {
+			int department = departmentOf(id);
+			boolean postgraduate = random.nextInt(5) == 0;
+			int fee = (postgraduate ? 3000 : 1000) + 50 * random.nextInt(60);
+			out.row(id, DEPARTMENTS[department - 1][1] + id, pick(random, COURSE_TOPICS) + " " + DEPARTMENTS[department - 1][0],
+				3 + random.nextInt(4), postgraduate ? "Postgraduate" : "Undergraduate", fee + ".00", department);
+		}
+	}
+
+	private void writeStudents(Rows out) throws IOException {
+		SplittableRandom random = random(4);
+		for (int id = 1; id <= scale.students(); id++) {
+			String first = pick(random, FIRST_NAMES);
+			String last = pick(random, LAST_NAMES);
+			int firstYear = firstYearOf(id);
+			LocalDate dateOfBirth = LocalDate.of(firstYear - 18, 1, 1).plusDays(random.nextInt(3 * 365));
+			out.row(id, first, last, dateOfBirth, pick(random, GENDERS), pick(random, NATIONALITIES), email(first, last, id, "students"),
+				LocalDate.of(firstYear, 9, 1));
+		}
+	}
+
+	private void writeEnrollments(Rows out) throws IOException {
+		SplittableRandom random = random(5);
+		for (long id = 1; id <= scale.enrollments(); id++) {
+			int student = 1 + random.nextInt(scale.students());
+			int course = 1 + random.nextInt(scale.courses());
+			// Taught by a lecturer of the course's department
+			int lecturer = departmentOf(course) + scale.departments() * random.nextInt(scale.lecturersPerDepartment());
+			int academicYear = Math.min(lastAcademicYear, firstYearOf(student) + random.nextInt(4));
+			int semester = 1 + random.nextInt(2);
+			if (academicYear == lastAcademicYear && semester == 2) {
+				// The running semester has no grades yet
+				out.row(id, student, course, lecturer, academicYear, semester, null, "Enrolled");
+			} else {
+				double grade = Math.max(0, Math.min(100, 65 + 15 * random.nextGaussian()));
+				out.row(id, student, course, lecturer, academicYear, semester, String.format(Locale.ROOT, "%.2f", grade), grade >= 50 ? "Passed" : "Failed");
+			}
+		}
+	}
+
+	private void writePayments(Rows out) throws IOException {
+		SplittableRandom random = random(6);
+		long from = LocalDate.of(lastAcademicYear - scale.academicYears() + 1, 9, 1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+		long to = LocalDate.of(lastAcademicYear + 1, 9, 1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+		DateTimeFormatter timestamp = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssxxx").withZone(ZoneOffset.UTC);
+		for (long id = 1; id <= scale.payments(); id++) {
+			int student = 1 + random.nextInt(scale.students());
+			out.row(id, student, (200 + random.nextInt(4800)) + "." + String.format(Locale.ROOT, "%02d", random.nextInt(100)),
+				timestamp.format(Instant.ofEpochSecond(random.nextLong(from, to))), "Tuition payment");
+		}
+	}
+
+	// Lecturers and courses are spread over the departments round-robin
+	private int departmentOf(int id) {
+		return 1 + (id - 1) % scale.departments();
+	}
+
+	// A student's first academic year, derived from the id so enrollments can use it without a lookup
+	private int firstYearOf(int student) {
+		long mixed = mix(seed ^ (0x9E3779B97F4A7C15L * student));
+		return lastAcademicYear - scale.academicYears() + 1 + (int) Math.floorMod(mixed, (long) scale.academicYears());
+	}
+
+	private SplittableRandom random(int stream) {
+		return new SplittableRandom(mix(seed + stream));
+	}
+
+	// SplitMix64 finalizer
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static String pick(SplittableRandom random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private static String email(String first, String last, long id, String domain) {
+		return (first + "." + last).toLowerCase().replace(' ', '-') + "." + id + "@" + domain + ".example.edu";
+	}
+
+	// --- COPY plumbing ---
+
+	@FunctionalInterface
+	private interface RowWriter {
+		void write(Rows out) throws IOException;
+	}
+
+	private TableLoad copy(String table, String columns, RowWriter writer) {
+		long start = System.nanoTime();
+		long rows = operationalJdbcTemplate.execute((ConnectionCallback<Long>) connection -> copyIn(connection, table, columns, writer));
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		log.info("Copied {} rows into {} in {} ms.", rows, table, millis);
+		return new TableLoad(rows, millis);
+	}
+
+	private long copyIn(Connection connection, String table, String columns, RowWriter writer) throws SQLException {
+		PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), "COPY " + table + " (" + columns + ") FROM STDIN", bufferSize);
+		try {
+			writer.write(new Rows(out));
+			return out.endCopy();
+		} catch (IOException e) {
+			out.cancelCopy();
+			throw new UncheckedIOException("COPY into " + table + " failed", e);
+		} catch (SQLException | RuntimeException e) {
+			if (out.isActive()) {
+				out.cancelCopy();
+			}
+			throw e;
+		}
+	}
+
+	// One line of COPY text format per call; null becomes \N. Generated values never
+	// contain tabs, newlines or backslashes, so nothing needs escaping.
+	private static final class Rows {
+
+		private final PGCopyOutputStream out;
+		private final StringBuilder line = new StringBuilder(256);
+
+		Rows(PGCopyOutputStream out) {
+			this.out = out;
+		}
+
+		void row(Object... values) throws IOException {
+			line.setLength(0);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					line.append('\t');
+				}
+				line.append(values[i] == null ? "\\N" : values[i].toString());
+			}
+			line.append('\n');
+			out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -1,18 +1,29 @@
 
 package com.university.warehouse_etl.config;
 
+import java.time.Duration;
+
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
 import com.zaxxer.hikari.HikariDataSource;
 
+// One Hikari pool per workload rather than per database, each sized and timed out on its own:
+// the ETL extract (operational) and writer (warehouse) pools, the report reader and logins.
+// A nightly run cannot queue dashboards or sign-ins behind its batches, and a runaway
+// report cannot take the ETL's connections. Every pool shows up under its own "pool" tag
+// in the hikaricp.* metrics (pending, active, acquire time, timeouts).
 @Configuration
 public class DataSourceConfig {
 
@@ -30,7 +41,10 @@ public class DataSourceConfig {
     @ConfigurationProperties("app.datasource.operational.hikari")
     public HikariDataSource operationalDataSource(
             @Qualifier("operationalDataSourceProperties") DataSourceProperties properties) { 
-        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // Becomes the "pool" tag on the hikaricp.* metrics
+        dataSource.setPoolName("operational");
+        return dataSource;
     }
 
     // Create the JDBC template for the operational DB
@@ -56,7 +70,10 @@ public class DataSourceConfig {
     @ConfigurationProperties("app.datasource.warehouse.hikari")
     public HikariDataSource warehouseDataSource(
             @Qualifier("warehouseDataSourceProperties") DataSourceProperties properties) { 
-        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // Becomes the "pool" tag on the hikaricp.* metrics
+        dataSource.setPoolName("warehouse");
+        return dataSource;
     }
 
     // Create the JDBC template for the warehouse DB
@@ -64,4 +81,70 @@ public class DataSourceConfig {
     public JdbcTemplate warehouseJdbcTemplate(@Qualifier("warehouseDataSource") DataSource dataSource) {
         return new JdbcTemplate(dataSource);
     }
+
+    // Transactions on the warehouse DB, for ETL work that must become visible all at once
+    @Bean(name = "warehouseTransactionManager")
+    @Primary
+    public JdbcTransactionManager warehouseTransactionManager(@Qualifier("warehouseDataSource") DataSource dataSource) {
+        return new JdbcTransactionManager(dataSource);
+    }
+
+    @Bean(name = "warehouseTransactionTemplate")
+    public TransactionTemplate warehouseTransactionTemplate(@Qualifier("warehouseTransactionManager") JdbcTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
+
+    // --- REPORT READER (WAREHOUSE, OR A REPLICA OF IT) ---
+
+    // Left without a url, the report pool reads the warehouse with the warehouse's credentials
+    @Bean(name = "reportDataSourceProperties")
+    @ConfigurationProperties("app.datasource.report")
+    public DataSourceProperties reportDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean(name = "reportDataSource")
+    @ConfigurationProperties("app.datasource.report.hikari")
+    public HikariDataSource reportDataSource(
+            @Qualifier("reportDataSourceProperties") DataSourceProperties reportProperties,
+            @Qualifier("warehouseDataSourceProperties") DataSourceProperties warehouseProperties,
+            @Value("${app.reports.statement-timeout:30s}") Duration statementTimeout) {
+        DataSourceProperties properties = StringUtils.hasText(reportProperties.getUrl()) ? reportProperties : warehouseProperties;
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("report");
+        dataSource.setReadOnly(true);
+        // Set by the server at connect, so they hold for autocommit statements too
+        dataSource.addDataSourceProperty("options", "-c statement_timeout=" + statementTimeout.toMillis() + " -c default_transaction_read_only=on");
+        return dataSource;
+    }
+
+    @Bean(name = "reportJdbcTemplate")
+    public JdbcTemplate reportJdbcTemplate(@Qualifier("reportDataSource") DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    // Read-only transactions for the streamed exports
+    @Bean(name = "reportTransactionManager")
+    public JdbcTransactionManager reportTransactionManager(@Qualifier("reportDataSource") DataSource dataSource) {
+        return new JdbcTransactionManager(dataSource);
+    }
+
+
+    // --- AUTHENTICATION (OPERATIONAL DATABASE) ---
+
+    // Sign-ins and HOD department lookups: the operational DB, but not the extracts' pool
+    @Bean(name = "authDataSource")
+    @ConfigurationProperties("app.datasource.auth.hikari")
+    public HikariDataSource authDataSource(
+            @Qualifier("operationalDataSourceProperties") DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("auth");
+        return dataSource;
+    }
+
+    @Bean(name = "authJdbcTemplate")
+    public JdbcTemplate authJdbcTemplate(@Qualifier("authDataSource") DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
 }
\ No newline at end of file
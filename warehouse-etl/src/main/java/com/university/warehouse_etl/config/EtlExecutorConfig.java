@@ -0,0 +1,69 @@
+package com.university.warehouse_etl.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+public class EtlExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(EtlExecutorConfig.class);
+
+    // Worker pool for concurrent ETL steps. Each running step holds one connection from each
+    // pool while it streams, so the size follows the smaller of the two ETL pools and leaves
+    // one connection spare for the run's bookkeeping (ledger, watermarks). The run's source
+    // snapshot holds one more operational connection for the whole run.
+    @Bean(name = "etlExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService etlExecutor(@Qualifier("operationalDataSource") HikariDataSource operationalDataSource,
+                                       @Qualifier("warehouseDataSource") HikariDataSource warehouseDataSource,
+                                       @Value("${app.etl.parallelism:0}") int configuredParallelism) {
+        int threads = etlThreads(operationalDataSource, warehouseDataSource, configuredParallelism);
+        log.info("ETL executor sized to {} threads.", threads);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("etl-"));
+    }
+
+    // Worker pool for the chunked fact transform. It is separate from etlExecutor because the
+    // fact step itself runs there and waits on its chunks. Each chunk needs one warehouse
+    // connection, and the other steps running beside the fact step hold one each, so the two
+    // pools share the warehouse connections: chunks get what the steps cannot be using.
+    @Bean(name = "etlChunkExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService etlChunkExecutor(@Qualifier("operationalDataSource") HikariDataSource operationalDataSource,
+                                            @Qualifier("warehouseDataSource") HikariDataSource warehouseDataSource,
+                                            @Value("${app.etl.parallelism:0}") int configuredStepParallelism,
+                                            @Value("${app.etl.fact.parallelism:0}") int configuredParallelism) {
+        // Less the bookkeeping connection and one per other step; the waiting fact step holds none
+        int otherSteps = etlThreads(operationalDataSource, warehouseDataSource, configuredStepParallelism) - 1;
+        int poolBound = warehouseDataSource.getMaximumPoolSize() - 1 - otherSteps;
+        int threads = Math.max(1, configuredParallelism > 0 ? Math.min(configuredParallelism, poolBound) : poolBound);
+        log.info("ETL chunk executor sized to {} threads.", threads);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("etl-chunk-"));
+    }
+
+    private static int etlThreads(HikariDataSource operationalDataSource, HikariDataSource warehouseDataSource, int configuredParallelism) {
+        int poolBound = Math.min(operationalDataSource.getMaximumPoolSize() - 2, warehouseDataSource.getMaximumPoolSize() - 1);
+        return Math.max(1, configuredParallelism > 0 ? Math.min(configuredParallelism, poolBound) : poolBound);
+    }
+
+    // The staging writers: each COPY into staging is written here while the step's own thread
+    // keeps reading the source. There is one per running step, so etlExecutor bounds it.
+    @Bean(name = "etlCopyWriterExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService etlCopyWriterExecutor() {
+        return Executors.newCachedThreadPool(new CustomizableThreadFactory("etl-copy-"));
+    }
+
+    // Runs triggered from the admin endpoints, so the request returns straight away.
+    // One thread: EtlScheduler never lets two runs overlap anyway.
+    @Bean(name = "etlRunExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService etlRunExecutor() {
+        return Executors.newSingleThreadExecutor(new CustomizableThreadFactory("etl-run-"));
+    }
+}
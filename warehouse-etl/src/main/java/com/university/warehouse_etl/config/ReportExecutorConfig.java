@@ -0,0 +1,41 @@
+package com.university.warehouse_etl.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+public class ReportExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportExecutorConfig.class);
+
+    // Runs the queries of one dashboard request side by side. Every task holds a report
+    // connection, so the pool stays below the report pool and cannot starve it.
+    @Bean(name = "reportExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService reportExecutor(@Qualifier("reportDataSource") HikariDataSource reportDataSource,
+                                          @Value("${app.reports.parallelism:0}") int configuredParallelism) {
+        int poolBound = reportDataSource.getMaximumPoolSize() - 1;
+        int threads = Math.max(1, configuredParallelism > 0 ? Math.min(configuredParallelism, poolBound) : poolBound);
+        log.info("Report executor sized to {} threads.", threads);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("report-"));
+    }
+
+    // Scans the in-memory fact snapshot. The work is CPU-bound and holds no connections,
+    // so it follows the core count and is kept apart from reportExecutor, whose tasks
+    // wait on these scans.
+    @Bean(name = "snapshotScanExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService snapshotScanExecutor(@Value("${app.reports.snapshot.parallelism:0}") int configuredParallelism) {
+        int threads = configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+        log.info("Snapshot scan executor sized to {} threads.", threads);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("snapshot-scan-"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.university.warehouse_etl.controller;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.university.warehouse_etl.scheduler.EtlScheduler;
+import com.university.warehouse_etl.service.EtlMode;
+import com.university.warehouse_etl.service.EtlRunLedger;
+import com.university.warehouse_etl.service.EtlRunLedger.RunSummary;
+
+// Run history and manual re-runs. A failed run is resumed by triggering the same mode
+// (and step) again; the run itself happens in the background.
+@RestController
+@RequestMapping("/api/admin/etl")
+@PreAuthorize("hasRole('ADMIN')")
+public class EtlAdminController {
+
+    private final EtlScheduler etlScheduler;
+    private final EtlRunLedger ledger;
+
+    public EtlAdminController(EtlScheduler etlScheduler, EtlRunLedger ledger) {
+        this.etlScheduler = etlScheduler;
+        this.ledger = ledger;
+    }
+
+    @GetMapping("/runs")
+    public List<RunSummary> getRuns(@RequestParam(defaultValue = "20") int limit) {
+        return ledger.recent(Math.max(1, Math.min(limit, 200)));
+    }
+
+    // Defaults to the configured mode
+    @PostMapping("/runs")
+    public ResponseEntity<Void> startRun(@RequestParam(required = false) EtlMode mode) {
+        return started(etlScheduler.trigger(mode == null ? etlScheduler.getMode() : mode, null));
+    }
+
+    // Re-runs one step against what the warehouse already holds
+    @PostMapping("/steps/{step}")
+    public ResponseEntity<Void> startStep(@PathVariable String step, @RequestParam(required = false) EtlMode mode) {
+        if (!etlScheduler.stepNames().contains(step)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown ETL step: " + step);
+        }
+        EtlMode runMode = mode == null ? etlScheduler.getMode() : mode;
+        if (runMode == EtlMode.SHADOW) {
+            // A single step has no swap to publish its copies
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Single steps run in FULL or INCREMENTAL mode");
+        }
+        if (etlScheduler.orphansFacts(runMode, step)) {
+            // The fact tables and rollups would keep the old surrogate keys until a whole run
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A FULL reload of " + step + " re-keys the dimension; run it INCREMENTAL or run the whole ETL");
+        }
+        return started(etlScheduler.trigger(runMode, step));
+    }
+
+    private static ResponseEntity<Void> started(boolean started) {
+        if (!started) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An ETL run is already in progress");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -1,133 +1,314 @@
 package com.university.warehouse_etl.controller;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.university.warehouse_etl.security.HodDepartmentResolver;
+import com.university.warehouse_etl.service.DashboardService;
+import com.university.warehouse_etl.service.DataVersionStore;
+import com.university.warehouse_etl.service.DataVersionStore.DataVersion;
+import com.university.warehouse_etl.service.PivotRequest;
+import com.university.warehouse_etl.service.ReportFormat;
+import com.university.warehouse_etl.service.ReportService;
+import com.university.warehouse_etl.service.ReportService.DepartmentPerformanceDTO;
+import com.university.warehouse_etl.service.ReportService.DistinctStudentsDTO;
+import com.university.warehouse_etl.service.ReportService.DiversityDTO;
+import com.university.warehouse_etl.service.ReportService.EnrollmentTrendDTO;
+import com.university.warehouse_etl.service.ReportService.LecturerWorkloadDTO;
+import com.university.warehouse_etl.service.ReportService.MonthlyRevenueDTO;
+import com.university.warehouse_etl.service.ReportService.RevenueDTO;
+import com.university.warehouse_etl.service.ReportService.TopStudentDTO;
+import com.university.warehouse_etl.service.ReportService.TuitionRevenueDTO;
+import com.university.warehouse_etl.service.ReportService.YoYEnrollmentDTO;
 
 @RestController
 @RequestMapping("/api/reports")
 public class ReportController {
 
-    // --- DTO Records for our reports ---
-    public record DepartmentPerformanceDTO(String departmentName, Long studentsPassed, BigDecimal averageGrade) {}
-    public record EnrollmentTrendDTO(String yearMonth, Long enrollmentCount) {}
-    public record DiversityDTO(String category, Long count) {}
-    public record TuitionRevenueDTO(String departmentName, BigDecimal totalTuition) {}
-    public record TopStudentDTO(String studentName, BigDecimal grade) {}
-    public record LecturerWorkloadDTO(String lecturerName, Long studentCount) {}
-    public record YoYEnrollmentDTO(String monthName, long currentYearCount, long previousYearCount) {}
+    private final ReportService reportService;
+    private final DashboardService dashboardService;
+    private final HodDepartmentResolver hodDepartmentResolver;
+    private final DataVersionStore dataVersionStore;
+
+    public ReportController(ReportService reportService, DashboardService dashboardService,
+                            HodDepartmentResolver hodDepartmentResolver, DataVersionStore dataVersionStore) {
+        this.reportService = reportService;
+        this.dashboardService = dashboardService;
+        this.hodDepartmentResolver = hodDepartmentResolver;
+        this.dataVersionStore = dataVersionStore;
+    }
+
+    // Conditional GET: report data only changes when an ETL run completes, so the warehouse data
+    // version plus whatever else the response depends on identifies it. A matching If-None-Match
+    // (or If-Modified-Since) gets a 304 before any report query runs; the handler then returns null.
+    private boolean notModified(ServletWebRequest request, Object... scope) {
+        Optional<DataVersion> version = dataVersionStore.current();
+        if (version.isEmpty()) {
+            return false;
+        }
+        // Cacheable, but revalidated on every use since the next run can land at any time
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        return request.checkNotModified(version.get().etag(scope), version.get().publishedAt().toInstant().toEpochMilli());
+    }
+
+    // --- Combined dashboard: every report the user's roles allow, in one response ---
+
+    @GetMapping("/dashboard")
+    @PreAuthorize("hasAnyRole('VC', 'ADMIN', 'HOD')")
+    public Map<String, Object> getDashboard(Authentication authentication, ServletWebRequest request) {
+        boolean universityWide = HodDepartmentResolver.hasRole(authentication, "VC") || HodDepartmentResolver.hasRole(authentication, "ADMIN");
+        // Resolved once here instead of once per HOD report
+        String hodDepartment = HodDepartmentResolver.hasRole(authentication, "HOD") ? getDepartmentForHod(authentication) : null;
+        if (notModified(request, universityWide, hodDepartment)) {
+            return null;
+        }
+        return dashboardService.buildDashboard(universityWide, hodDepartment);
+    }
 
+    // --- Ad-hoc pivot over the star schema; HODs only ever see their own department ---
+
+    @PostMapping("/query")
+    @PreAuthorize("hasAnyRole('VC', 'ADMIN', 'HOD')")
+    public List<Map<String, Object>> query(@RequestBody PivotRequest request, Authentication authentication) {
+        boolean universityWide = HodDepartmentResolver.hasRole(authentication, "VC") || HodDepartmentResolver.hasRole(authentication, "ADMIN");
+        PivotRequest scoped = universityWide ? request : request.withFilter("department.department_name", Collections.singletonList(getDepartmentForHod(authentication)));
+        try {
+            return reportService.runPivot(scoped);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
 
-    private final JdbcTemplate warehouseJdbcTemplate;
-    private final JdbcTemplate operationalJdbcTemplate;
+    // --- Distinct students over academic years (e.g. from=2023/2024&to=2024/2025) and departments ---
 
-    public ReportController(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
-                            @Qualifier("operationalJdbcTemplate") JdbcTemplate operationalJdbcTemplate) {
-        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
-        this.operationalJdbcTemplate = operationalJdbcTemplate;
+    @GetMapping("/distinct-students")
+    @PreAuthorize("hasAnyRole('VC', 'ADMIN', 'HOD')")
+    public DistinctStudentsDTO getDistinctStudents(@RequestParam(name = "department", required = false) List<String> departments,
+                                                   @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   Authentication authentication, ServletWebRequest request) {
+        boolean universityWide = HodDepartmentResolver.hasRole(authentication, "VC") || HodDepartmentResolver.hasRole(authentication, "ADMIN");
+        // Sorted so the same selection shares one cache entry and ETag
+        List<String> scoped = universityWide
+            ? (departments == null ? List.of() : departments.stream().distinct().sorted().toList())
+            : List.of(getDepartmentForHod(authentication));
+        if (notModified(request, scoped, academicYear(from), academicYear(to))) {
+            return null;
+        }
+        return reportService.getDistinctStudents(scoped, from, to);
+    }
+
+    private static String academicYear(String value) {
+        if (value != null && !value.matches("\\d{4}/\\d{4}")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Academic years look like 2024/2025, not " + value);
+        }
+        return value;
     }
 
     // --- VC & ADMIN Reports ---
 
     @GetMapping("/department-performance")
     @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
-    public List<DepartmentPerformanceDTO> getDepartmentPerformance() {
-        String sql = "SELECT d.department_name, SUM(f.is_passed) AS number_of_students_passed, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) AS average_grade FROM fact_enrollment f JOIN dim_department d ON f.department_key = d.department_key WHERE f.is_passed = 1 GROUP BY d.department_name ORDER BY d.department_name";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new DepartmentPerformanceDTO(rs.getString("department_name"), rs.getLong("number_of_students_passed"), rs.getBigDecimal("average_grade")));
+    public List<DepartmentPerformanceDTO> getDepartmentPerformance(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return reportService.getDepartmentPerformance();
     }
 
     @GetMapping("/enrollment-trend")
     @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
-    public List<EnrollmentTrendDTO> getEnrollmentTrend() {
-        String sql = "SELECT d.year || '-' || d.month_name AS year_month, SUM(f.enrollment_count) AS enrollment_count FROM fact_enrollment f JOIN dim_date d ON f.date_key = d.date_key GROUP BY d.year, d.month, d.month_name, year_month ORDER BY d.year, d.month";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new EnrollmentTrendDTO(rs.getString("year_month"), rs.getLong("enrollment_count")));
+    public List<EnrollmentTrendDTO> getEnrollmentTrend(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return reportService.getEnrollmentTrend();
     }
 
     @GetMapping("/student-diversity")
     @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
-    public List<DiversityDTO> getStudentDiversity() {
-        String sql = "SELECT nationality AS category, COUNT(*) as count FROM dim_student GROUP BY nationality ORDER BY count DESC";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new DiversityDTO(rs.getString("category"), rs.getLong("count")));
+    public List<DiversityDTO> getStudentDiversity(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return reportService.getStudentDiversity();
     }
 
     @GetMapping("/tuition-revenue")
     @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
-    public List<TuitionRevenueDTO> getTuitionRevenue() {
-        String sql = "SELECT d.department_name, CAST(SUM(f.tuition_fee) AS NUMERIC(15,2)) as total_tuition " +
-                     "FROM fact_enrollment f JOIN dim_department d ON f.department_key = d.department_key " +
-                     "GROUP BY d.department_name ORDER BY total_tuition DESC";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new TuitionRevenueDTO(rs.getString("department_name"), rs.getBigDecimal("total_tuition")));
+    public List<TuitionRevenueDTO> getTuitionRevenue(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return reportService.getTuitionRevenue();
     }
     
     
     @GetMapping("/yoy-enrollment")
     @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
-    public List<YoYEnrollmentDTO> getYoyEnrollment() {
-        // advanced query uses  Common Table Expression (CTE) and the LAG() window function
-        String sql = "WITH monthly_enrollments AS ( " +
-                     "  SELECT d.year, d.month, d.month_name, SUM(f.enrollment_count) as total_enrollments " +
-                     "  FROM fact_enrollment f " +
-                     "  JOIN dim_date d ON f.date_key = d.date_key " +
-                     "  GROUP BY d.year, d.month, d.month_name " +
-                     "), " +
-                     "yoy_comparison AS ( " +
-                     "  SELECT year, month, month_name, total_enrollments, " +
-                     "  LAG(total_enrollments, 1) OVER (PARTITION BY month_name ORDER BY year) as previous_year_enrollments " +
-                     "  FROM monthly_enrollments " +
-                     ") " +
-                     "SELECT month_name, total_enrollments as current_year_count, " +
-                     "COALESCE(previous_year_enrollments, 0) as previous_year_count " +
-                     "FROM yoy_comparison " +
-                     
-                     "WHERE year = (SELECT MAX(d.year) FROM fact_enrollment f JOIN dim_date d ON f.date_key = d.date_key) " +
-                     "ORDER BY month";
-
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) ->
-            new YoYEnrollmentDTO(
-                rs.getString("month_name"),
-                rs.getLong("current_year_count"),
-                rs.getLong("previous_year_count")
-            ));
+    public List<YoYEnrollmentDTO> getYoyEnrollment(ServletWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
+        return reportService.getYoyEnrollment();
+    }
+
+
+    // Defaults to the year up to and including today
+    @GetMapping("/revenue/collected-vs-billed")
+    @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
+    public List<RevenueDTO> getCollectedVsBilled(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 ServletWebRequest request) {
+        LocalDate end = revenueEnd(to);
+        LocalDate start = revenueStart(from, end);
+        // The resolved period, since the default one moves with the date
+        if (notModified(request, start, end)) {
+            return null;
+        }
+        return reportService.getCollectedVsBilled(start, end);
+    }
+
+    @GetMapping("/revenue/monthly")
+    @PreAuthorize("hasAnyRole('VC', 'ADMIN')")
+    public List<MonthlyRevenueDTO> getMonthlyRevenue(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                     ServletWebRequest request) {
+        LocalDate end = revenueEnd(to);
+        LocalDate start = revenueStart(from, end);
+        if (notModified(request, start, end)) {
+            return null;
+        }
+        return reportService.getMonthlyRevenue(start, end);
+    }
+
+    // The period is [from, to)
+    private static LocalDate revenueEnd(LocalDate to) {
+        return to != null ? to : LocalDate.now().plusDays(1);
+    }
+
+    private static LocalDate revenueStart(LocalDate from, LocalDate end) {
+        LocalDate start = from != null ? from : end.minusYears(1);
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must be before 'to'");
+        }
+        return start;
     }
 
 
     // --- HOD-Specific Reports ---
 
     private String getDepartmentForHod(Authentication authentication) {
-        String username = authentication.getName();
-        return operationalJdbcTemplate.queryForObject(
-            "SELECT department_name FROM app_user WHERE username = ?", String.class, username);
+        return hodDepartmentResolver.getDepartmentForHod(authentication);
     }
 
     @GetMapping("/hod/course-performance")
     @PreAuthorize("hasRole('HOD')")
-    public List<Map<String, Object>> getHodCoursePerformance(Authentication authentication) {
-        String userDepartment = getDepartmentForHod(authentication);
-        String sql = "SELECT c.course_title, SUM(f.is_passed) as passed_count, (COUNT(f.enrollment_fact_id) - SUM(f.is_passed)) as failed_count, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) as average_grade FROM fact_enrollment f JOIN dim_course c ON f.course_key = c.course_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? AND f.final_grade IS NOT NULL GROUP BY c.course_title ORDER BY c.course_title";
-        return warehouseJdbcTemplate.queryForList(sql, userDepartment);
+    public List<Map<String, Object>> getHodCoursePerformance(Authentication authentication, ServletWebRequest request) {
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department)) {
+            return null;
+        }
+        return reportService.getHodCoursePerformance(department);
     }
 
     @GetMapping("/hod/top-students")
     @PreAuthorize("hasRole('HOD')")
-    public List<TopStudentDTO> getTopStudents(Authentication authentication) {
-        String userDepartment = getDepartmentForHod(authentication);
-        String sql = "SELECT s.full_name, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) as grade FROM fact_enrollment f JOIN dim_student s ON f.student_key = s.student_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? AND f.final_grade IS NOT NULL GROUP BY s.full_name ORDER BY grade DESC LIMIT 5";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new TopStudentDTO(rs.getString("full_name"), rs.getBigDecimal("grade")), userDepartment);
+    public List<TopStudentDTO> getTopStudents(Authentication authentication, ServletWebRequest request) {
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department)) {
+            return null;
+        }
+        return reportService.getTopStudents(department);
     }
 
     @GetMapping("/hod/lecturer-workload")
     @PreAuthorize("hasRole('HOD')")
-    public List<LecturerWorkloadDTO> getLecturerWorkload(Authentication authentication) {
-        String userDepartment = getDepartmentForHod(authentication);
-        String sql = "SELECT l.full_name, COUNT(f.enrollment_fact_id) as student_count FROM fact_enrollment f JOIN dim_lecturer l ON f.lecturer_key = l.lecturer_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? GROUP BY l.full_name ORDER BY student_count DESC";
-        return warehouseJdbcTemplate.query(sql, (rs, rowNum) -> new LecturerWorkloadDTO(rs.getString("full_name"), rs.getLong("student_count")), userDepartment);
+    public List<LecturerWorkloadDTO> getLecturerWorkload(Authentication authentication, ServletWebRequest request) {
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department)) {
+            return null;
+        }
+        return reportService.getLecturerWorkload(department);
+    }
+
+    // --- HOD streamed exports: ?format=ndjson (default), json or csv ---
+
+    @GetMapping("/hod/course-performance/export")
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<StreamingResponseBody> exportHodCoursePerformance(Authentication authentication,
+                                                                            @RequestParam(defaultValue = "ndjson") String format,
+                                                                            ServletWebRequest request) {
+        ReportFormat reportFormat = parseFormat(format);
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department, reportFormat)) {
+            return null;
+        }
+        return streamed("course-performance", reportFormat, out -> reportService.streamHodCoursePerformance(department, reportFormat, out));
+    }
+
+    @GetMapping("/hod/lecturer-workload/export")
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<StreamingResponseBody> exportLecturerWorkload(Authentication authentication,
+                                                                        @RequestParam(defaultValue = "ndjson") String format,
+                                                                        ServletWebRequest request) {
+        ReportFormat reportFormat = parseFormat(format);
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department, reportFormat)) {
+            return null;
+        }
+        return streamed("lecturer-workload", reportFormat, out -> reportService.streamLecturerWorkload(department, reportFormat, out));
+    }
+
+    @GetMapping("/hod/enrollments/export")
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<StreamingResponseBody> exportHodEnrollments(Authentication authentication,
+                                                                      @RequestParam(defaultValue = "ndjson") String format,
+                                                                      ServletWebRequest request) {
+        ReportFormat reportFormat = parseFormat(format);
+        String department = getDepartmentForHod(authentication);
+        if (notModified(request, department, reportFormat)) {
+            return null;
+        }
+        return streamed("enrollments", reportFormat, out -> reportService.streamHodEnrollments(department, reportFormat, out));
+    }
+
+    private static ReportFormat parseFormat(String format) {
+        try {
+            return ReportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+    }
+
+    // The body is written on the MVC async executor after this method returns
+    private static ResponseEntity<StreamingResponseBody> streamed(String report, ReportFormat format, StreamingResponseBody body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(format.contentType()));
+        if (format == ReportFormat.CSV) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + report + ".csv\"");
+        }
+        return response.body(body);
     }
-}
\ No newline at end of file
+}
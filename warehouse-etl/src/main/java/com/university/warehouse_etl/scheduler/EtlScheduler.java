@@ -1,39 +1,256 @@
 package com.university.warehouse_etl.scheduler;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.university.warehouse_etl.service.DataVersionStore;
+import com.university.warehouse_etl.service.EtlMetrics;
+import com.university.warehouse_etl.service.EtlMode;
+import com.university.warehouse_etl.service.EtlRunCompletedEvent;
+import com.university.warehouse_etl.service.EtlRunLedger;
 import com.university.warehouse_etl.service.EtlService;
+import com.university.warehouse_etl.service.ReportReplicaSync;
+import com.university.warehouse_etl.service.RollupService;
+import com.university.warehouse_etl.service.SourceSnapshot;
+import com.university.warehouse_etl.service.StagingCopier;
 
 @Component
 public class EtlScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(EtlScheduler.class);
+    // A SHADOW run that fails in one of these has already swapped its tables in
+    private static final Set<String> AFTER_SWAP_STEPS = Set.of("rollups", "fact_payment");
+    // A FULL reload of these hands out new surrogate keys, which only a whole run carries into the facts and rollups
+    private static final Set<String> REKEYED_DIMENSIONS = Set.of("dim_department", "dim_lecturer", "dim_course", "dim_student");
+
     private final EtlService etlService;
+    private final RollupService rollupService;
+    private final EtlMode mode;
+    private final ExecutorService etlExecutor;
+    private final ExecutorService etlRunExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EtlMetrics metrics;
+    private final EtlRunLedger ledger;
+    private final StagingCopier stagingCopier;
+    private final DataVersionStore dataVersionStore;
+    private final ReportReplicaSync reportReplicaSync;
+
+    // One run at a time, whether scheduled or triggered by an admin
+    private final AtomicBoolean running = new AtomicBoolean();
 
-    public EtlScheduler(EtlService etlService) {
+    public EtlScheduler(EtlService etlService, RollupService rollupService, @Value("${app.etl.mode:FULL}") EtlMode mode,
+                        @Qualifier("etlExecutor") ExecutorService etlExecutor,
+                        @Qualifier("etlRunExecutor") ExecutorService etlRunExecutor,
+                        ApplicationEventPublisher eventPublisher,
+                        EtlMetrics metrics,
+                        EtlRunLedger ledger,
+                        StagingCopier stagingCopier,
+                        DataVersionStore dataVersionStore,
+                        ReportReplicaSync reportReplicaSync) {
         this.etlService = etlService;
+        this.rollupService = rollupService;
+        this.mode = mode;
+        this.etlExecutor = etlExecutor;
+        this.etlRunExecutor = etlRunExecutor;
+        this.eventPublisher = eventPublisher;
+        this.metrics = metrics;
+        this.ledger = ledger;
+        this.stagingCopier = stagingCopier;
+        this.dataVersionStore = dataVersionStore;
+        this.reportReplicaSync = reportReplicaSync;
     }
 
-    
+
     @Scheduled(cron = "0 0 2 * * ?") // This runs at 2:00 AM every day
     public void runFullEtlProcess() {
-        log.info("=== SCHEDULED ETL PROCESS STARTED ===");
-        
-        // Load utility dimensions first
-        etlService.loadDateDimension();
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Skipping the scheduled ETL run, another run is still in progress.");
+            return;
+        }
+        try {
+            execute(mode, null);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public EtlMode getMode() {
+        return mode;
+    }
+
+    // The steps an admin can run on their own
+    public Set<String> stepNames() {
+        return buildGraph(EtlMode.FULL, null).stepNames();
+    }
+
+    // Whether running the step alone in this mode would leave the facts pointing at keys that no longer exist
+    public boolean orphansFacts(EtlMode runMode, String step) {
+        return runMode == EtlMode.FULL && REKEYED_DIMENSIONS.contains(step);
+    }
 
-        // Load entity dimensions using the new staging logic
-        etlService.loadDepartments();
-        etlService.loadLecturers();
-        etlService.loadCourses();
-        etlService.loadStudents();
+    // Starts a whole run (step == null) or a single step in the background.
+    // Returns false without starting anything if a run is already in progress.
+    public boolean trigger(EtlMode runMode, String step) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            etlRunExecutor.execute(() -> {
+                try {
+                    execute(runMode, step);
+                } catch (EtlStepException e) {
+                    // already logged and recorded in the ledger
+                } catch (RuntimeException e) {
+                    // Nothing else would see it: the ledger could not open the run, or it failed outside a step
+                    log.error("Triggered ETL run ({}, {}) failed.", runMode, step == null ? EtlRunLedger.SCOPE_ALL : step, e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    private void execute(EtlMode runMode, String onlyStep) {
+        EtlRunLedger.Run run = ledger.begin(runMode, onlyStep == null ? EtlRunLedger.SCOPE_ALL : onlyStep);
+        log.info("=== ETL RUN {} STARTED ({}, {}{}) ===", run.runId(), runMode, run.scope(), run.resumed() ? ", resumed" : "");
+        long start = System.nanoTime();
+
+        Map<String, Duration> timings;
+        // Every extract of the run reads the operational DB as of this one snapshot
+        try (SourceSnapshot snapshot = openSnapshot()) {
+            EtlTaskGraph graph = buildGraph(runMode, run);
+            if (onlyStep != null) {
+                graph = graph.only(onlyStep);
+            } else if (runMode != EtlMode.SHADOW) {
+                // A FULL dimension reload re-keys what the rollups point at, so reports go back to
+                // the fact table before the first dimension step, not only once the facts load
+                rollupService.markStale();
+            }
+            timings = graph.run(etlExecutor);
+            ledger.finish(run.runId(), true, null);
+        } catch (RuntimeException e) {
+            // A failure outside any step (closing the snapshot, finishing the ledger) fails the run just the same
+            EtlStepException failure = e instanceof EtlStepException stepFailure ? stepFailure : new EtlStepException("run", e);
+            log.error("=== ETL RUN {} FAILED at step '{}' ===", run.runId(), failure.getStep(), failure.getCause());
+            recordQuietly(() -> ledger.finish(run.runId(), false, failure.getCause()));
+            if (onlyStep == null) {
+                metrics.recordRun(runMode, false, Duration.ofNanos(System.nanoTime() - start));
+            }
+            // Once every step has run the shadow tables are live, so only a failed step discards them
+            if (runMode == EtlMode.SHADOW && failure == e && !AFTER_SWAP_STEPS.contains(failure.getStep())) {
+                etlService.discardShadowTables();
+            }
+            throw failure;
+        }
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        timings.forEach((step, stepElapsed) -> {
+            log.info("  {}: {} ms", step, stepElapsed.toMillis());
+            metrics.recordStep(step, stepElapsed);
+        });
+        if (onlyStep == null) {
+            metrics.recordRun(runMode, true, elapsed);
+        }
+        log.info("=== ETL RUN {} FINISHED in {} ms ===", run.runId(), elapsed.toMillis());
+
+        if (!reportReplicaSync.awaitCaughtUp()) {
+            // The caches keep the previous run's reports under the previous ETag, which is still
+            // consistent; clearing them now would refill them from the replica's old rows under the new one
+            log.error("The report replica did not replay run {} in time; reports stay on data version {} until the next run.",
+                      run.runId(), dataVersionStore.current().map(version -> String.valueOf(version.version())).orElse("(none)"));
+            return;
+        }
+        // Lets report caches and other read-side state know the warehouse changed
+        eventPublisher.publishEvent(new EtlRunCompletedEvent(runMode, OffsetDateTime.now(), elapsed));
+        // Only after the caches were cleared, so report ETags never pair the new version with old data
+        dataVersionStore.publish(run.runId());
+    }
 
-        // Load the fact table last
-        etlService.loadFactEnrollment();
+    private EtlTaskGraph buildGraph(EtlMode runMode, EtlRunLedger.Run run) {
+        // The dimensions do not depend on each other, so they load concurrently;
+        // the fact table waits for all of them because it resolves their surrogate keys
+        EtlTaskGraph graph = new EtlTaskGraph()
+            .step("dim_date", tracked(run, "dim_date", () -> etlService.loadDateDimension(runMode)))
+            .step("dim_department", tracked(run, "dim_department", () -> etlService.loadDepartments(runMode)))
+            .step("dim_lecturer", tracked(run, "dim_lecturer", () -> etlService.loadLecturers(runMode)))
+            .step("dim_course", tracked(run, "dim_course", () -> etlService.loadCourses(runMode)))
+            .step("dim_student", tracked(run, "dim_student", () -> etlService.loadStudents(runMode)))
+            .step("fact_enrollment", tracked(run, "fact_enrollment", () -> {
+                      // Reports go back to the fact table until the rollups catch up; a whole run
+                      // already did so. A shadow load leaves the live fact table alone until the swap.
+                      if (runMode != EtlMode.SHADOW) {
+                          rollupService.markStale();
+                      }
+                      return etlService.loadFactEnrollment(runMode, ledger.checkpoints(run.runId(), "fact_enrollment"));
+                  }),
+                  "dim_date", "dim_department", "dim_lecturer", "dim_course", "dim_student");
+        if (runMode == EtlMode.SHADOW) {
+            graph.step("swap", tracked(run, "swap", () -> {
+                      etlService.swapShadowTables();
+                      rollupService.markStale();
+                      return 0;
+                  }), "fact_enrollment")
+                 .step("rollups", tracked(run, "rollups", rollupService::rebuild), "swap")
+                 // Payment keys are resolved against the live dimensions, so they wait for the swap
+                 .step("fact_payment", tracked(run, "fact_payment", () -> etlService.loadFactPayments(runMode)), "swap");
+        } else {
+            graph.step("rollups", tracked(run, "rollups", rollupService::rebuild), "fact_enrollment")
+                 .step("fact_payment", tracked(run, "fact_payment", () -> etlService.loadFactPayments(runMode)), "dim_date", "dim_department", "dim_student");
+        }
+        return graph;
+    }
+
+    private SourceSnapshot openSnapshot() {
+        try {
+            return stagingCopier.openSnapshot();
+        } catch (RuntimeException e) {
+            throw new EtlStepException("source_snapshot", e);
+        }
+    }
+
+    // Records the step in the run ledger; a step that already succeeded in a resumed run is skipped
+    private Runnable tracked(EtlRunLedger.Run run, String step, LongSupplier work) {
+        return () -> {
+            if (run.succeededSteps().contains(step)) {
+                log.info("ETL step '{}' already succeeded in run {}, skipping.", step, run.runId());
+                return;
+            }
+            ledger.stepStarted(run.runId(), step);
+            long rows;
+            try {
+                rows = work.getAsLong();
+            } catch (RuntimeException e) {
+                recordQuietly(() -> ledger.stepFailed(run.runId(), step, e));
+                throw e;
+            }
+            ledger.stepSucceeded(run.runId(), step, rows);
+        };
+    }
 
-        log.info("=== SCHEDULED ETL PROCESS FINISHED ===");
+    // On the failure path the warehouse may be what failed; a run left RUNNING is resumed anyway
+    private static void recordQuietly(Runnable ledgerUpdate) {
+        try {
+            ledgerUpdate.run();
+        } catch (RuntimeException e) {
+            log.warn("Could not update the ETL run ledger: {}", e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
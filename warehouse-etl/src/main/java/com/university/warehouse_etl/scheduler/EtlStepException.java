@@ -0,0 +1,16 @@
+package com.university.warehouse_etl.scheduler;
+
+// Thrown when one step of an ETL run fails; the rest of the run is cancelled.
+public class EtlStepException extends RuntimeException {
+
+    private final String step;
+
+    public EtlStepException(String step, Throwable cause) {
+        super("ETL step '" + step + "' failed: " + cause.getMessage(), cause);
+        this.step = step;
+    }
+
+    public String getStep() {
+        return step;
+    }
+}
@@ -0,0 +1,177 @@
+package com.university.warehouse_etl.scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// A small dependency graph of ETL steps. Every step whose dependencies have finished is
+// handed to the executor straight away, so independent loads run side by side. The first
+// failure cancels everything still queued, interrupts the steps still running and waits for
+// them to return before it is rethrown as EtlStepException, so nothing of a failed run is
+// still writing once the caller cleans up. Steps check for the interrupt between units of work.
+public class EtlTaskGraph {
+
+    private static final Logger log = LoggerFactory.getLogger(EtlTaskGraph.class);
+
+    private record Step(String name, Runnable action, List<String> dependsOn) {}
+
+    // Shared by the steps of one run: after a failure no further step starts, and the run
+    // can wait until the steps already running have returned
+    private static final class RunState {
+
+        private boolean failed;
+        private int active;
+
+        synchronized boolean enter() {
+            if (failed) {
+                return false;
+            }
+            active++;
+            return true;
+        }
+
+        synchronized void exit() {
+            active--;
+            notifyAll();
+        }
+
+        synchronized void fail() {
+            failed = true;
+        }
+
+        synchronized void awaitIdle() throws InterruptedException {
+            while (active > 0) {
+                wait();
+            }
+        }
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    public EtlTaskGraph step(String name, Runnable action, String... dependsOn) {
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate ETL step: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                // Requiring dependencies to be declared first also rules out cycles
+                throw new IllegalArgumentException("Step '" + name + "' depends on undeclared step '" + dependency + "'");
+            }
+        }
+        steps.put(name, new Step(name, action, List.of(dependsOn)));
+        return this;
+    }
+
+    public Set<String> stepNames() {
+        return Collections.unmodifiableSet(steps.keySet());
+    }
+
+    // A graph of just the named step, with its dependencies taken as already satisfied
+    public EtlTaskGraph only(String name) {
+        Step step = steps.get(name);
+        if (step == null) {
+            throw new IllegalArgumentException("Unknown ETL step: " + name);
+        }
+        return new EtlTaskGraph().step(name, step.action());
+    }
+
+    // Runs the graph to completion and returns each step's duration in completion order.
+    public Map<String, Duration> run(Executor executor) {
+        CompletionService<String> completion = new ExecutorCompletionService<>(executor);
+        Map<String, Future<String>> running = new HashMap<>();
+        Map<String, Duration> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+        Set<String> finished = new HashSet<>();
+        RunState state = new RunState();
+
+        submitReady(completion, running, finished, timings, state);
+        while (!running.isEmpty()) {
+            String name = null;
+            try {
+                Future<String> done = completion.take();
+                name = nameOf(running, done);
+                done.get();
+                running.remove(name);
+                finished.add(name);
+            } catch (ExecutionException e) {
+                running.remove(name);
+                stopAll(running, state);
+                throw new EtlStepException(name, e.getCause());
+            } catch (InterruptedException e) {
+                state.fail();
+                cancelAll(running);
+                Thread.currentThread().interrupt();
+                throw new EtlStepException(name == null ? "scheduler" : name, e);
+            }
+            submitReady(completion, running, finished, timings, state);
+        }
+        return new LinkedHashMap<>(timings);
+    }
+
+    private void submitReady(CompletionService<String> completion, Map<String, Future<String>> running,
+                             Set<String> finished, Map<String, Duration> timings, RunState state) {
+        for (Step step : steps.values()) {
+            if (finished.contains(step.name()) || running.containsKey(step.name()) || !finished.containsAll(step.dependsOn())) {
+                continue;
+            }
+            running.put(step.name(), completion.submit(() -> {
+                if (!state.enter()) {
+                    // Dequeued after the run failed but before it was cancelled
+                    return step.name();
+                }
+                try {
+                    long start = System.nanoTime();
+                    step.action().run();
+                    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    timings.put(step.name(), elapsed);
+                    log.info("ETL step '{}' finished in {} ms.", step.name(), elapsed.toMillis());
+                    return step.name();
+                } finally {
+                    state.exit();
+                }
+            }));
+        }
+    }
+
+    private static String nameOf(Map<String, Future<String>> running, Future<String> future) {
+        return running.entrySet().stream()
+            .filter(entry -> entry.getValue() == future)
+            .map(Map.Entry::getKey)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    // The futures come from the executor's own FutureTasks, so cancel(true) interrupts the
+    // thread running the step; a step only returns early where it checks the interrupt
+    private static void stopAll(Map<String, Future<String>> running, RunState state) {
+        state.fail();
+        cancelAll(running);
+        try {
+            state.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void cancelAll(Map<String, Future<String>> running) {
+        for (Map.Entry<String, Future<String>> entry : new ArrayList<>(running.entrySet())) {
+            if (entry.getValue().cancel(true)) {
+                log.warn("Cancelled ETL step '{}'.", entry.getKey());
+            }
+        }
+        running.clear();
+    }
+}
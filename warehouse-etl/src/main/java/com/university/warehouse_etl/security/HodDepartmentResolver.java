@@ -0,0 +1,29 @@
+package com.university.warehouse_etl.security;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+// Looks up which department a Head of Department user is responsible for
+@Component
+public class HodDepartmentResolver {
+
+    // On the auth pool: this runs on the request path of every HOD report
+    private final JdbcTemplate authJdbcTemplate;
+
+    public HodDepartmentResolver(@Qualifier("authJdbcTemplate") JdbcTemplate authJdbcTemplate) {
+        this.authJdbcTemplate = authJdbcTemplate;
+    }
+
+    public String getDepartmentForHod(Authentication authentication) {
+        String username = authentication.getName();
+        return authJdbcTemplate.queryForObject(
+            "SELECT department_name FROM app_user WHERE username = ?", String.class, username);
+    }
+
+    public static boolean hasRole(Authentication authentication, String role) {
+        return authentication.getAuthorities().stream()
+            .anyMatch(authority -> ("ROLE_" + role).equals(authority.getAuthority()));
+    }
+}
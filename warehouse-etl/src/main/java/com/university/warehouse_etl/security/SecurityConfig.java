@@ -28,7 +28,7 @@ public class SecurityConfig {
     // Bean #2: The Database User Details Manager (Restored as a separate bean)
     // This is the bean that Spring looks for to disable the default security password.
     @Bean
-    public UserDetailsManager userDetailsManager(@Qualifier("operationalDataSource") DataSource dataSource) {
+    public UserDetailsManager userDetailsManager(@Qualifier("authDataSource") DataSource dataSource) {
         JdbcUserDetailsManager users = new JdbcUserDetailsManager(dataSource);
         users.setUsersByUsernameQuery("SELECT username, password, enabled FROM app_user WHERE username=?");
         users.setAuthoritiesByUsernameQuery(
@@ -47,6 +47,9 @@ public class SecurityConfig {
         http
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/css/**", "/js/**", "/login").permitAll()
+                // Health is public for load balancers; metrics and the rest of actuator are admin-only
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -0,0 +1,67 @@
+package com.university.warehouse_etl.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+// Builds every report a dashboard needs in one go. The reports are independent queries,
+// so they run concurrently and the response is ready once the slowest one is. When one
+// fails, the others are cancelled through their executor futures: queued reports never
+// start, and running ones are interrupted (a query already on the server still ends at the
+// report pool's statement timeout at the latest).
+@Service
+public class DashboardService {
+
+    private final ReportService reportService;
+    private final ExecutorService reportExecutor;
+
+    public DashboardService(ReportService reportService, @Qualifier("reportExecutor") ExecutorService reportExecutor) {
+        this.reportService = reportService;
+        this.reportExecutor = reportExecutor;
+    }
+
+    // hodDepartment is null unless the user is a Head of Department
+    public Map<String, Object> buildDashboard(boolean universityWide, String hodDepartment) {
+        Map<String, Future<?>> pending = new LinkedHashMap<>();
+        if (universityWide) {
+            submit(pending, "departmentPerformance", reportService::getDepartmentPerformance);
+            submit(pending, "enrollmentTrend", reportService::getEnrollmentTrend);
+            submit(pending, "studentDiversity", reportService::getStudentDiversity);
+            submit(pending, "tuitionRevenue", reportService::getTuitionRevenue);
+            submit(pending, "yoyEnrollment", reportService::getYoyEnrollment);
+        }
+        if (hodDepartment != null) {
+            submit(pending, "hodCoursePerformance", () -> reportService.getHodCoursePerformance(hodDepartment));
+            submit(pending, "topStudents", () -> reportService.getTopStudents(hodDepartment));
+            submit(pending, "lecturerWorkload", () -> reportService.getLecturerWorkload(hodDepartment));
+        }
+
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        if (hodDepartment != null) {
+            dashboard.put("department", hodDepartment);
+        }
+        try {
+            for (Map.Entry<String, Future<?>> report : pending.entrySet()) {
+                dashboard.put(report.getKey(), report.getValue().get());
+            }
+        } catch (ExecutionException e) {
+            pending.values().forEach(report -> report.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            pending.values().forEach(report -> report.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the dashboard", e);
+        }
+        return dashboard;
+    }
+
+    private void submit(Map<String, Future<?>> pending, String name, Callable<?> report) {
+        pending.put(name, reportExecutor.submit(report));
+    }
+}
@@ -0,0 +1,93 @@
+package com.university.warehouse_etl.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+// The version of the data the reports read, kept in warehouse_data_version. It is bumped
+// after every successful ETL run and served from memory, so answering a conditional GET
+// costs no query.
+@Component
+public class DataVersionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DataVersionStore.class);
+
+    public record DataVersion(long version, OffsetDateTime publishedAt) {
+
+        // Weak, because the same version is served both compressed and not. The scope is
+        // whatever else the response depends on (department, parameters), hashed so it is
+        // always a valid header value.
+        public String etag(Object... scope) {
+            String tag = "v" + version;
+            if (scope.length > 0) {
+                tag += "-" + DigestUtils.md5DigestAsHex(Arrays.deepToString(scope).getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+            }
+            return "W/\"" + tag + "\"";
+        }
+    }
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+
+    // null until loaded; empty while no run has published a version yet
+    private volatile Optional<DataVersion> current;
+
+    public DataVersionStore(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        current();
+    }
+
+    public Optional<DataVersion> current() {
+        Optional<DataVersion> version = current;
+        if (version == null) {
+            try {
+                List<DataVersion> rows = warehouseJdbcTemplate.query("SELECT version, published_at FROM warehouse_data_version",
+                    (rs, rowNum) -> new DataVersion(rs.getLong(1), rs.getObject(2, OffsetDateTime.class)));
+                version = rows.stream().findFirst();
+                current = version;
+            } catch (DataAccessException e) {
+                // Responses go out without validators until the warehouse answers
+                log.warn("Could not read the warehouse data version: {}", e.getMessage());
+                return Optional.empty();
+            }
+        }
+        return version;
+    }
+
+    // Call once the run's data is visible and the report caches are cleared, so a client
+    // that revalidates with the new ETag can only ever get the new data
+    public DataVersion publish(long runId) {
+        DataVersion published;
+        try {
+            published = warehouseJdbcTemplate.queryForObject(
+                "INSERT INTO warehouse_data_version (version, run_id) VALUES (1, ?) " +
+                "ON CONFLICT (singleton) DO UPDATE SET version = warehouse_data_version.version + 1, run_id = EXCLUDED.run_id, published_at = now() " +
+                "RETURNING version, published_at",
+                (rs, rowNum) -> new DataVersion(rs.getLong(1), rs.getObject(2, OffsetDateTime.class)), runId);
+        } catch (DataAccessException e) {
+            // Clients must not keep revalidating stale data against the old ETag, so move on in memory
+            Optional<DataVersion> previous = current;
+            long next = previous == null || previous.isEmpty() ? 1 : previous.get().version() + 1;
+            published = new DataVersion(next, OffsetDateTime.now());
+            log.warn("Could not record warehouse data version {} for run {}, serving it from memory: {}", next, runId, e.getMessage());
+        }
+        current = Optional.of(published);
+        log.info("Published warehouse data version {} (run {}).", published.version(), runId);
+        return published;
+    }
+}
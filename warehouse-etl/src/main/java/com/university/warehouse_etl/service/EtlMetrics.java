@@ -0,0 +1,58 @@
+package com.university.warehouse_etl.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+// Micrometer instrumentation for the ETL, published on /actuator/metrics and /actuator/prometheus.
+//   etl.rows.read / etl.rows.written / etl.rows.skipped   counters per step and phase
+//   etl.phase.duration                                    timer per step and phase
+//   etl.phase.throughput                                  rows/s written by the last run of a phase
+//   etl.step.duration, etl.run.duration                   wall clock per graph step / whole run
+@Component
+public class EtlMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(EtlMetrics.class);
+
+    private final MeterRegistry registry;
+    private final Map<Tags, AtomicLong> throughput = new ConcurrentHashMap<>();
+
+    public EtlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // phase is one of extract (operational -> staging via COPY), transform or load
+    public void recordPhase(String step, String phase, long rowsRead, long rowsWritten, long rowsSkipped, long elapsedNanos) {
+        Tags tags = Tags.of("step", step, "phase", phase);
+        registry.counter("etl.rows.read", tags).increment(rowsRead);
+        registry.counter("etl.rows.written", tags).increment(rowsWritten);
+        registry.counter("etl.rows.skipped", tags).increment(rowsSkipped);
+        registry.timer("etl.phase.duration", tags).record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        long rowsPerSecond = elapsedNanos > 0 ? Math.round(rowsWritten * 1e9 / elapsedNanos) : rowsWritten;
+        throughput.computeIfAbsent(tags, key -> registry.gauge("etl.phase.throughput", key, new AtomicLong())).set(rowsPerSecond);
+        log.info("{} {}: read {}, wrote {}, skipped {} in {} ms ({} rows/s).",
+            step, phase, rowsRead, rowsWritten, rowsSkipped, elapsedNanos / 1_000_000, rowsPerSecond);
+    }
+
+    public void recordStep(String step, Duration elapsed) {
+        registry.timer("etl.step.duration", "step", step).record(elapsed);
+    }
+
+    public void recordRun(EtlMode mode, boolean succeeded, Duration elapsed) {
+        Timer.builder("etl.run.duration")
+            .tags("mode", mode.name(), "outcome", succeeded ? "success" : "failure")
+            .register(registry)
+            .record(elapsed);
+    }
+}
@@ -0,0 +1,12 @@
+package com.university.warehouse_etl.service;
+
+// How a run treats the existing warehouse contents
+public enum EtlMode {
+    // Truncate every table and rebuild it from a complete extract
+    FULL,
+    // Extract only rows changed since the last watermark and merge them by natural key
+    INCREMENTAL,
+    // Rebuild every table as an unindexed <table>_next copy and swap the copies in together
+    // at the end, so reports keep reading the previous data until the new data is complete
+    SHADOW
+}
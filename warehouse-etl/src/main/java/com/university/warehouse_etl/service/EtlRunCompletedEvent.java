@@ -0,0 +1,7 @@
+package com.university.warehouse_etl.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+// Published once every step of an ETL run has succeeded, i.e. the warehouse holds new data
+public record EtlRunCompletedEvent(EtlMode mode, OffsetDateTime finishedAt, Duration elapsed) {}
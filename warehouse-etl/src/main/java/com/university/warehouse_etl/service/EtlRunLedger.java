@@ -0,0 +1,129 @@
+package com.university.warehouse_etl.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// The ETL run ledger in the warehouse (etl_run, etl_run_step, etl_run_checkpoint).
+// A run that did not succeed - failed, or left RUNNING by a process that died - is
+// resumed by the next run with the same mode and scope, as long as it started within
+// the resume window: steps that succeeded are skipped and the chunked steps carry on
+// after their last committed checkpoint. SHADOW runs discard their copies on failure,
+// so they always start over.
+@Component
+public class EtlRunLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(EtlRunLedger.class);
+
+    public static final String SCOPE_ALL = "all";
+
+    // succeededSteps is empty for a new run
+    public record Run(long runId, EtlMode mode, String scope, boolean resumed, Set<String> succeededSteps) {}
+
+    public record StepSummary(String step, String status, Long rowsWritten, OffsetDateTime startedAt, OffsetDateTime finishedAt, long checkpoints, String error) {}
+
+    public record RunSummary(long runId, String mode, String scope, String status, int attempts, OffsetDateTime startedAt, OffsetDateTime finishedAt, String error, List<StepSummary> steps) {}
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final Duration resumeWindow;
+
+    public EtlRunLedger(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                        @Value("${app.etl.resume.max-age:PT24H}") Duration resumeWindow) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.resumeWindow = resumeWindow;
+    }
+
+    public Run begin(EtlMode mode, String scope) {
+        List<Map<String, Object>> latest = warehouseJdbcTemplate.queryForList(
+            "SELECT run_id, mode, scope, status, started_at > now() - CAST(? AS interval) AS recent FROM etl_run ORDER BY run_id DESC LIMIT 1",
+            resumeWindow.getSeconds() + " seconds");
+        if (!latest.isEmpty()) {
+            Map<String, Object> last = latest.get(0);
+            boolean unfinished = !"SUCCEEDED".equals(last.get("status"));
+            if (unfinished && mode != EtlMode.SHADOW && mode.name().equals(last.get("mode")) && scope.equals(last.get("scope")) && Boolean.TRUE.equals(last.get("recent"))) {
+                long runId = ((Number) last.get("run_id")).longValue();
+                warehouseJdbcTemplate.update("UPDATE etl_run SET status = 'RUNNING', attempts = attempts + 1, finished_at = NULL, error = NULL WHERE run_id = ?", runId);
+                Set<String> succeeded = Set.copyOf(warehouseJdbcTemplate.queryForList(
+                    "SELECT step FROM etl_run_step WHERE run_id = ? AND status = 'SUCCEEDED'", String.class, runId));
+                log.info("Resuming ETL run {} ({}, {}); already done: {}", runId, mode, scope, succeeded);
+                return new Run(runId, mode, scope, true, succeeded);
+            }
+        }
+        Long runId = warehouseJdbcTemplate.queryForObject(
+            "INSERT INTO etl_run (mode, scope, status) VALUES (?, ?, 'RUNNING') RETURNING run_id", Long.class, mode.name(), scope);
+        log.info("Started ETL run {} ({}, {}).", runId, mode, scope);
+        return new Run(runId, mode, scope, false, Set.of());
+    }
+
+    public void stepStarted(long runId, String step) {
+        warehouseJdbcTemplate.update(
+            "INSERT INTO etl_run_step (run_id, step, status) VALUES (?, ?, 'RUNNING') " +
+            "ON CONFLICT (run_id, step) DO UPDATE SET status = 'RUNNING', started_at = now(), finished_at = NULL, error = NULL",
+            runId, step);
+    }
+
+    public void stepSucceeded(long runId, String step, long rowsWritten) {
+        warehouseJdbcTemplate.update(
+            "UPDATE etl_run_step SET status = 'SUCCEEDED', rows_written = ?, finished_at = now() WHERE run_id = ? AND step = ?",
+            rowsWritten, runId, step);
+    }
+
+    public void stepFailed(long runId, String step, Throwable error) {
+        warehouseJdbcTemplate.update(
+            "UPDATE etl_run_step SET status = 'FAILED', finished_at = now(), error = ? WHERE run_id = ? AND step = ?",
+            String.valueOf(error), runId, step);
+    }
+
+    public void finish(long runId, boolean succeeded, Throwable error) {
+        warehouseJdbcTemplate.update(
+            "UPDATE etl_run SET status = ?, finished_at = now(), error = ? WHERE run_id = ?",
+            succeeded ? "SUCCEEDED" : "FAILED", error == null ? null : String.valueOf(error), runId);
+    }
+
+    // What the step committed in earlier attempts of this run
+    public StepCheckpoints checkpoints(long runId, String step) {
+        Map<String, Long> committed = new HashMap<>();
+        OffsetDateTime[] extractedAt = new OffsetDateTime[1];
+        warehouseJdbcTemplate.query(
+            "SELECT checkpoint, rows_written, extracted_at FROM etl_run_checkpoint WHERE run_id = ? AND step = ?",
+            rs -> {
+                committed.put(rs.getString("checkpoint"), rs.getLong("rows_written"));
+                if (StepCheckpoints.EXTRACT.equals(rs.getString("checkpoint"))) {
+                    extractedAt[0] = rs.getObject("extracted_at", OffsetDateTime.class);
+                }
+            }, runId, step);
+        return new StepCheckpoints(warehouseJdbcTemplate, runId, step, committed, extractedAt[0]);
+    }
+
+    // Latest runs first, with their steps
+    public List<RunSummary> recent(int limit) {
+        Map<Long, List<StepSummary>> steps = new LinkedHashMap<>();
+        warehouseJdbcTemplate.query(
+            "SELECT s.run_id, s.step, s.status, s.rows_written, s.started_at, s.finished_at, s.error, " +
+            "(SELECT count(*) FROM etl_run_checkpoint c WHERE c.run_id = s.run_id AND c.step = s.step) AS checkpoints " +
+            "FROM etl_run_step s WHERE s.run_id IN (SELECT run_id FROM etl_run ORDER BY run_id DESC LIMIT ?) ORDER BY s.run_id, s.started_at",
+            rs -> {
+                steps.computeIfAbsent(rs.getLong("run_id"), id -> new ArrayList<>()).add(new StepSummary(
+                    rs.getString("step"), rs.getString("status"), (Long) rs.getObject("rows_written"),
+                    rs.getObject("started_at", OffsetDateTime.class), rs.getObject("finished_at", OffsetDateTime.class),
+                    rs.getLong("checkpoints"), rs.getString("error")));
+            }, limit);
+        return warehouseJdbcTemplate.query(
+            "SELECT run_id, mode, scope, status, attempts, started_at, finished_at, error FROM etl_run ORDER BY run_id DESC LIMIT ?",
+            (rs, rowNum) -> new RunSummary(rs.getLong("run_id"), rs.getString("mode"), rs.getString("scope"), rs.getString("status"),
+                rs.getInt("attempts"), rs.getObject("started_at", OffsetDateTime.class), rs.getObject("finished_at", OffsetDateTime.class),
+                rs.getString("error"), steps.getOrDefault(rs.getLong("run_id"), List.of())), limit);
+    }
+}
@@ -1,236 +1,789 @@
 package com.university.warehouse_etl.service;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.university.warehouse_etl.service.SurrogateKeyCache.Dimension;
 
 @Service
 public class EtlService {
 
     private static final Logger log = LoggerFactory.getLogger(EtlService.class);
 
-    private final JdbcTemplate operationalJdbcTemplate;
+    // Checkpoints of the fact step: the staged years, each committed chunk and each finished year
+    private static final String YEAR_CHECKPOINT = "year:";
+    private static final String CHUNK_CHECKPOINT = "chunk:";
+    private static final String BUILT_CHECKPOINT = "built:";
+
+    // Swapped together at the end of a SHADOW run. The partitioned fact tables are not shadowed:
+    // fact_enrollment's rebuilt years are exchanged in the same transaction, and fact_payment
+    // reloads inside one transaction after the swap.
+    private static final List<String> SHADOW_TABLES = List.of("dim_date", "dim_department", "dim_lecturer", "dim_course", "dim_student");
+
+    // The SQL engine's transforms, selecting the same columns in the same order as the Java path writes them
+    private static final String LECTURER_COLUMNS = "lecturer_id, full_name, email";
+    private static final String LECTURER_TRANSFORM = "SELECT lecturer_id, " + EtlTransforms.fullNameSql("first_name", "last_name") + ", email FROM staging.stg_lecturers";
+    private static final String STUDENT_COLUMNS = "student_id, full_name, gender, nationality, age_group";
+    private static final String FACT_COLUMNS = "enrollment_id, date_key, student_key, course_key, department_key, lecturer_key, final_grade, tuition_fee, enrollment_count, is_passed";
+
     private final JdbcTemplate warehouseJdbcTemplate;
+    private final StagingCopier stagingCopier;
+    private final WatermarkStore watermarkStore;
+    private final ExecutorService etlChunkExecutor;
+    private final int factChunkSize;
+    private final int dimensionBatchSize;
+    private final SurrogateKeyCache keyCache;
+    private final EtlMetrics metrics;
+    private final ShadowTables shadowTables;
+    private final PartitionManager partitionManager;
+    private final TransactionTemplate warehouseTransactionTemplate;
+    private final Environment environment;
+    private final TransformEngine defaultEngine;
+
+    // SHADOW runs only move the watermarks once their tables are swapped in
+    private final Map<String, OffsetDateTime> pendingWatermarks = new ConcurrentHashMap<>();
+    // ...and the academic years of fact_enrollment they rebuilt
+    private volatile List<Integer> pendingFactYears = List.of();
 
     // DTOs are unchanged
     private record LecturerDTO(Integer id, String firstName, String lastName, String email) {}
     
     private record StudentDTO(Integer id, String firstName, String lastName, String gender, String nationality, LocalDate dateOfBirth) {}
+
+    // Fact loading is split into enrollment_id ranges that are transformed in parallel
+    private record IdRange(int from, int to) {}
+
+    private record TransformedChunk(List<Object[]> rows, int skipped) {}
+
+    // Chunk timings are summed per phase, so fact throughput is reported per worker thread
+    private record FactChunk(int loaded, int skipped, long transformNanos, long loadNanos) {}
+
+    // Highest payment already in fact_payment; lastDate is null while the table is empty
+    private record PaymentMark(int lastId, OffsetDateTime lastDate) {}
+
+    private record FactKeyMaps(IntKeyMap student, IntKeyMap course, IntKeyMap lecturer, IntKeyMap department) {}
     
 
 
-    public EtlService(@Qualifier("operationalJdbcTemplate") JdbcTemplate operationalJdbcTemplate,
-                      @Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate) {
-        this.operationalJdbcTemplate = operationalJdbcTemplate;
+    public EtlService(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                      StagingCopier stagingCopier,
+                      WatermarkStore watermarkStore,
+                      @Qualifier("etlChunkExecutor") ExecutorService etlChunkExecutor,
+                      @Value("${app.etl.fact.chunk-size:50000}") int factChunkSize,
+                      @Value("${app.etl.dimension.batch-size:10000}") int dimensionBatchSize,
+                      SurrogateKeyCache keyCache,
+                      EtlMetrics metrics,
+                      ShadowTables shadowTables,
+                      PartitionManager partitionManager,
+                      @Qualifier("warehouseTransactionTemplate") TransactionTemplate warehouseTransactionTemplate,
+                      Environment environment,
+                      @Value("${app.etl.transform.default-engine:JAVA}") TransformEngine defaultEngine) {
         this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.stagingCopier = stagingCopier;
+        this.watermarkStore = watermarkStore;
+        this.etlChunkExecutor = etlChunkExecutor;
+        this.factChunkSize = factChunkSize;
+        this.dimensionBatchSize = dimensionBatchSize;
+        this.keyCache = keyCache;
+        this.metrics = metrics;
+        this.shadowTables = shadowTables;
+        this.partitionManager = partitionManager;
+        this.warehouseTransactionTemplate = warehouseTransactionTemplate;
+        this.environment = environment;
+        this.defaultEngine = defaultEngine;
     }
 
-    // This method is unchanged as it does not depend on the operational DB
-    public void loadDateDimension() {
+    // Dim_Date is generated here, so it does not depend on the operational DB
+    public int loadDateDimension(EtlMode mode) {
         log.info("--- Starting ETL for Dim_Date... ---");
+        long transformStart = System.nanoTime();
         LocalDate startDate = LocalDate.of(2020, 1, 1);
         LocalDate endDate = LocalDate.of(2025, 12, 31);
         List<Object[]> dateRecords = new ArrayList<>();
-        DateTimeFormatter keyFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            int dateKey = Integer.parseInt(date.format(keyFormatter));
-            int month = date.getMonthValue();
-            int quarter = (month - 1) / 3 + 1;
-            String academicYear; String semester;
-            if (month >= 9) { academicYear = date.getYear() + "/" + (date.getYear() + 1); semester = "Semester 1"; }
-            else if (month <= 5) { academicYear = (date.getYear() - 1) + "/" + date.getYear(); semester = "Semester 2"; }
-            else { academicYear = (date.getYear() - 1) + "/" + date.getYear(); semester = "Summer"; }
-            dateRecords.add(new Object[]{ dateKey, java.sql.Date.valueOf(date), date.getDayOfWeek().name(), date.getMonthValue(), date.getMonth().name(), quarter, date.getYear(), academicYear, semester });
-        }
-        log.info("Generated {} date records.", dateRecords.size());
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_date CASCADE");
-        log.info("Truncated dim_date table.");
-        String loadSql = "INSERT INTO dim_date (date_key, full_date, day_of_week, month, month_name, quarter, year, academic_year, semester) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            int dateKey = EtlTransforms.dateKey(date);
+            int quarter = (date.getMonthValue() - 1) / 3 + 1;
+            dateRecords.add(new Object[]{ dateKey, java.sql.Date.valueOf(date), date.getDayOfWeek().name(), date.getMonthValue(), date.getMonth().name(), quarter, date.getYear(), EtlTransforms.academicYear(date), EtlTransforms.semester(date) });
+        }
+        metrics.recordPhase("dim_date", "transform", 0, dateRecords.size(), 0, System.nanoTime() - transformStart);
+        String loadSql = "INSERT INTO " + target(mode, "dim_date") + " (date_key, full_date, day_of_week, month, month_name, quarter, year, academic_year, semester) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        if (mode == EtlMode.FULL) {
+            warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_date CASCADE");
+            log.info("Truncated dim_date table.");
+        } else if (mode == EtlMode.INCREMENTAL) {
+            // Dates never change, so only missing days are added and the facts keep their references
+            loadSql += " ON CONFLICT (date_key) DO NOTHING";
+        }
+        long loadStart = System.nanoTime();
         warehouseJdbcTemplate.batchUpdate(loadSql, dateRecords);
+        metrics.recordPhase("dim_date", "load", dateRecords.size(), dateRecords.size(), 0, System.nanoTime() - loadStart);
+        finishTarget(mode, "dim_date");
         log.info("Successfully loaded {} records into dim_date.", dateRecords.size());
+        return dateRecords.size();
     }
 
     // --- REFACTORED METHODS USING STAGING TABLES ---
 
-    public void loadDepartments() {
-        log.info("--- Starting ETL for Dim_Department... ---");
-        // STAGE 1: Extract from Operational DB into Staging DB
+    public int loadDepartments(EtlMode mode) {
+        log.info("--- Starting ETL for Dim_Department ({})... ---", mode);
+        // STAGE 1: Stream from Operational DB into Staging DB (COPY, nothing held on the heap)
         log.info("[1/2] Extracting data into staging.stg_departments...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE staging.stg_departments");
         String extractSql = "SELECT department_id, department_name, dean_name FROM departments";
-        List<Object[]> sourceData = operationalJdbcTemplate.query(extractSql, (rs, rowNum) -> new Object[]{rs.getInt("department_id"), rs.getString("department_name"), rs.getString("dean_name")});
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO staging.stg_departments VALUES (?, ?, ?)", sourceData);
-        log.info("Extracted {} departments into staging.", sourceData.size());
+        OffsetDateTime extractedAt = extract("dim_department", mode, "departments", "last_updated", extractSql, "staging.stg_departments", "department_id, department_name, dean_name");
 
         // STAGE 2: Load from Staging into final Dimension Table
         log.info("[2/2] Loading data from staging into dim_department...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_department CASCADE");
-        String loadSql = "INSERT INTO dim_department (department_id, department_name, dean_name) SELECT department_id, department_name, dean_name FROM staging.stg_departments";
-        int rowsAffected = warehouseJdbcTemplate.update(loadSql);
-        log.info("Successfully loaded {} records into dim_department.", rowsAffected);
+        String loadSql = "INSERT INTO " + target(mode, "dim_department") + " (department_id, department_name, dean_name) SELECT department_id, department_name, dean_name FROM staging.stg_departments";
+        if (mode == EtlMode.FULL) {
+            keyCache.invalidate(Dimension.DEPARTMENT);
+            warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_department CASCADE");
+        } else if (mode == EtlMode.INCREMENTAL) {
+            loadSql += " ON CONFLICT (department_id) DO UPDATE SET department_name = EXCLUDED.department_name, dean_name = EXCLUDED.dean_name";
+        }
+        long loadStart = System.nanoTime();
+        IntKeyMap keys = warehouseJdbcTemplate.query(loadSql + Dimension.DEPARTMENT.returning(), SurrogateKeyCache.KEY_COLLECTOR);
+        metrics.recordPhase("dim_department", "load", keys.size(), keys.size(), 0, System.nanoTime() - loadStart);
+        finishTarget(mode, "dim_department");
+        publishKeys(mode, Dimension.DEPARTMENT, keys);
+        advanceWatermark(mode, "departments", extractedAt);
+        log.info("Successfully loaded {} records into dim_department.", keys.size());
+        return keys.size();
     }
 
-    public void loadLecturers() {
-        log.info("--- Starting ETL for Dim_Lecturer... ---");
+    public int loadLecturers(EtlMode mode) {
+        log.info("--- Starting ETL for Dim_Lecturer ({})... ---", mode);
         // STAGE 1: Extract to Staging
         log.info("[1/2] Extracting data into staging.stg_lecturers...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE staging.stg_lecturers");
         String extractSql = "SELECT lecturer_id, first_name, last_name, email, department_id FROM lecturers";
-        List<Object[]> sourceData = operationalJdbcTemplate.query(extractSql, (rs, rowNum) -> new Object[]{rs.getInt("lecturer_id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"), rs.getInt("department_id")});
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO staging.stg_lecturers VALUES (?, ?, ?, ?, ?)", sourceData);
-        log.info("Extracted {} lecturers into staging.", sourceData.size());
+        OffsetDateTime extractedAt = extract("dim_lecturer", mode, "lecturers", "last_updated", extractSql, "staging.stg_lecturers", "lecturer_id, first_name, last_name, email, department_id");
 
         // STAGE 2: Transform & Load from Staging
-        log.info("[2/2] Loading data from staging into dim_lecturer...");
-        List<LecturerDTO> stagedData = warehouseJdbcTemplate.query("SELECT lecturer_id, first_name, last_name, email FROM staging.stg_lecturers", (rs, rowNum) -> new LecturerDTO(rs.getInt("lecturer_id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email")));
-        List<Object[]> transformedData = stagedData.stream().map(dto -> new Object[]{dto.id(), dto.firstName() + " " + dto.lastName(), dto.email()}).collect(Collectors.toList());
-        
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_lecturer CASCADE");
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO dim_lecturer (lecturer_id, full_name, email) VALUES (?, ?, ?)", transformedData);
-        log.info("Successfully loaded {} records into dim_lecturer.", transformedData.size());
+        TransformEngine engine = engine("dim_lecturer");
+        log.info("[2/2] Loading data from staging into dim_lecturer ({} transform)...", engine);
+        String table = target(mode, "dim_lecturer");
+        String upsert = "";
+        if (mode == EtlMode.FULL) {
+            keyCache.invalidate(Dimension.LECTURER);
+        } else if (mode == EtlMode.INCREMENTAL) {
+            upsert = " ON CONFLICT (lecturer_id) DO UPDATE SET full_name = EXCLUDED.full_name, email = EXCLUDED.email";
+        }
+        IntKeyMap keys;
+        if (engine == TransformEngine.SQL) {
+            if (mode == EtlMode.FULL) {
+                warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_lecturer CASCADE");
+            }
+            long loadStart = System.nanoTime();
+            keys = warehouseJdbcTemplate.query("INSERT INTO " + table + " (" + LECTURER_COLUMNS + ") " + LECTURER_TRANSFORM + upsert + Dimension.LECTURER.returning(), SurrogateKeyCache.KEY_COLLECTOR);
+            metrics.recordPhase("dim_lecturer", "load", keys.size(), keys.size(), 0, System.nanoTime() - loadStart);
+        } else {
+            long transformStart = System.nanoTime();
+            List<LecturerDTO> stagedData = warehouseJdbcTemplate.query("SELECT lecturer_id, first_name, last_name, email FROM staging.stg_lecturers", (rs, rowNum) -> new LecturerDTO(rs.getInt("lecturer_id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email")));
+            List<Object[]> transformedData = stagedData.stream().map(dto -> new Object[]{dto.id(), EtlTransforms.fullName(dto.firstName(), dto.lastName()), dto.email()}).collect(Collectors.toList());
+            metrics.recordPhase("dim_lecturer", "transform", stagedData.size(), transformedData.size(), 0, System.nanoTime() - transformStart);
+
+            if (mode == EtlMode.FULL) {
+                warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_lecturer CASCADE");
+            }
+            long loadStart = System.nanoTime();
+            keys = insertReturningKeys("INSERT INTO " + table + " (" + LECTURER_COLUMNS + ") SELECT * FROM unnest(?, ?, ?)" + upsert + Dimension.LECTURER.returning(), transformedData, "int4", "varchar", "varchar");
+            metrics.recordPhase("dim_lecturer", "load", transformedData.size(), keys.size(), 0, System.nanoTime() - loadStart);
+            if (engine == TransformEngine.VERIFY) {
+                verifyDimension("dim_lecturer", table, LECTURER_COLUMNS, "lecturer_id", "staging.stg_lecturers", LECTURER_TRANSFORM);
+            }
+        }
+        finishTarget(mode, "dim_lecturer");
+        publishKeys(mode, Dimension.LECTURER, keys);
+        advanceWatermark(mode, "lecturers", extractedAt);
+        log.info("Successfully loaded {} records into dim_lecturer.", keys.size());
+        return keys.size();
     }
 
     
-    public void loadCourses() {
-        log.info("--- Starting ETL for Dim_Course... ---");
+    public int loadCourses(EtlMode mode) {
+        log.info("--- Starting ETL for Dim_Course ({})... ---", mode);
         // STAGE 1: Extract to Staging
         log.info("[1/2] Extracting data into staging.stg_courses...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE staging.stg_courses");
-        String extractSql = "SELECT course_id, course_code, course_title, level, credits, department_id, tuition_fee FROM courses";
-
-        
-        List<Object[]> sourceData = operationalJdbcTemplate.query(extractSql, (rs, rowNum) -> new Object[]{
-            rs.getInt("course_id"),
-            rs.getString("course_code"),
-            rs.getString("course_title"),
-            rs.getInt("credits"),      
-            rs.getString("level"),      
-            rs.getBigDecimal("tuition_fee"),
-            rs.getInt("department_id")
-        });
-        
-        // The INSERT statement now matches the corrected order
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO staging.stg_courses (course_id, course_code, course_title, credits, level, tuition_fee, department_id) VALUES (?, ?, ?, ?, ?, ?, ?)", sourceData);
-        log.info("Extracted {} courses into staging.", sourceData.size());
+        // Column order must match the staging column list below (credits before level)
+        String extractSql = "SELECT course_id, course_code, course_title, credits, level, tuition_fee, department_id FROM courses";
+        OffsetDateTime extractedAt = extract("dim_course", mode, "courses", "last_updated", extractSql, "staging.stg_courses", "course_id, course_code, course_title, credits, level, tuition_fee, department_id");
 
         // STAGE 2: Load from Staging
         log.info("[2/2] Loading data from staging into dim_course...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_course CASCADE");
-        String loadSql = "INSERT INTO dim_course (course_id, course_code, course_title, level, credits) SELECT course_id, course_code, course_title, level, credits FROM staging.stg_courses";
-        int rowsAffected = warehouseJdbcTemplate.update(loadSql);
-        log.info("Successfully loaded {} records into dim_course.", rowsAffected);
+        String loadSql = "INSERT INTO " + target(mode, "dim_course") + " (course_id, course_code, course_title, level, credits) SELECT course_id, course_code, course_title, level, credits FROM staging.stg_courses";
+        if (mode == EtlMode.FULL) {
+            keyCache.invalidate(Dimension.COURSE);
+            warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_course CASCADE");
+        } else if (mode == EtlMode.INCREMENTAL) {
+            loadSql += " ON CONFLICT (course_id) DO UPDATE SET course_code = EXCLUDED.course_code, course_title = EXCLUDED.course_title, level = EXCLUDED.level, credits = EXCLUDED.credits";
+        }
+        long loadStart = System.nanoTime();
+        IntKeyMap keys = warehouseJdbcTemplate.query(loadSql + Dimension.COURSE.returning(), SurrogateKeyCache.KEY_COLLECTOR);
+        metrics.recordPhase("dim_course", "load", keys.size(), keys.size(), 0, System.nanoTime() - loadStart);
+        finishTarget(mode, "dim_course");
+        publishKeys(mode, Dimension.COURSE, keys);
+        advanceWatermark(mode, "courses", extractedAt);
+        log.info("Successfully loaded {} records into dim_course.", keys.size());
+        return keys.size();
     }
     
     // Replace your existing loadStudents method with this one
-    public void loadStudents() {
-        log.info("--- Starting ETL for Dim_Student... ---");
+    public int loadStudents(EtlMode mode) {
+        log.info("--- Starting ETL for Dim_Student ({})... ---", mode);
         // STAGE 1: Extract to Staging
         log.info("[1/2] Extracting data into staging.stg_students...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE staging.stg_students");
         
         // Ensure all necessary columns, including email, are selected
         String extractSql = "SELECT student_id, first_name, last_name, date_of_birth, gender, nationality, email, enrollment_date FROM students";
-        
-        List<Object[]> sourceData = operationalJdbcTemplate.query(extractSql, (rs, rowNum) -> new Object[]{
-            rs.getInt("student_id"),
-            rs.getString("first_name"),
-            rs.getString("last_name"),
-            rs.getDate("date_of_birth"),      // Correct order: 4th column is DATE
-            rs.getString("gender"),          // Correct order: 5th column is VARCHAR
-            rs.getString("nationality"),
-            rs.getString("email"),           // This column was missing before
-            rs.getDate("enrollment_date")
-        });
-        
-        // The INSERT now has the correct number of placeholders
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO staging.stg_students VALUES (?, ?, ?, ?, ?, ?, ?, ?)", sourceData);
-        log.info("Extracted {} students into staging.", sourceData.size());
+        OffsetDateTime extractedAt = extract("dim_student", mode, "students", "last_updated", extractSql, "staging.stg_students", "student_id, first_name, last_name, date_of_birth, gender, nationality, email, enrollment_date");
 
         // STAGE 2: Transform & Load from Staging
-        log.info("[2/2] Loading data from staging into dim_student...");
-        List<StudentDTO> stagedData = warehouseJdbcTemplate.query("SELECT student_id, first_name, last_name, gender, nationality, date_of_birth FROM staging.stg_students", (rs, rowNum) -> new StudentDTO(rs.getInt("student_id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("gender"), rs.getString("nationality"), rs.getDate("date_of_birth").toLocalDate()));
-        List<Object[]> transformedData = stagedData.stream().map(dto -> {
-            String fullName = dto.firstName() + " " + dto.lastName();
-            int age = Period.between(dto.dateOfBirth(), LocalDate.now()).getYears();
-            String ageGroup; if (age <= 21) { ageGroup = "18-21"; } else if (age <= 25) { ageGroup = "22-25"; } else { ageGroup = "26+"; }
-            return new Object[]{ dto.id(), fullName, dto.gender(), dto.nationality(), ageGroup };
-        }).collect(Collectors.toList());
-
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_student CASCADE");
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO dim_student (student_id, full_name, gender, nationality, age_group) VALUES (?, ?, ?, ?, ?)", transformedData);
-        log.info("Successfully loaded {} records into dim_student.", transformedData.size());
-    }
-
-    public void loadFactEnrollment() {
-        log.info("--- Starting ETL for Fact_Enrollment... ---");
-        // STAGE 1: Extract to Staging (occurs in a separate method call)
-        log.info("[1/2] Extracting data into staging.stg_enrollments...");
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE staging.stg_enrollments");
-        String extractSql = "SELECT enrollment_id, student_id, course_id, lecturer_id, academic_year, semester, final_grade, status FROM enrollments";
-        List<Object[]> sourceData = operationalJdbcTemplate.query(extractSql, (rs, rowNum) -> new Object[]{rs.getInt("enrollment_id"), rs.getInt("student_id"), rs.getInt("course_id"), rs.getInt("lecturer_id"), rs.getInt("academic_year"), rs.getInt("semester"), rs.getBigDecimal("final_grade"), rs.getString("status")});
-        warehouseJdbcTemplate.batchUpdate("INSERT INTO staging.stg_enrollments VALUES (?, ?, ?, ?, ?, ?, ?, ?)", sourceData);
-        log.info("Extracted {} enrollments into staging.", sourceData.size());
+        TransformEngine engine = engine("dim_student");
+        log.info("[2/2] Loading data from staging into dim_student ({} transform)...", engine);
+        LocalDate today = LocalDate.now();
+        String table = target(mode, "dim_student");
+        String upsert = "";
+        if (mode == EtlMode.FULL) {
+            keyCache.invalidate(Dimension.STUDENT);
+        } else if (mode == EtlMode.INCREMENTAL) {
+            upsert = " ON CONFLICT (student_id) DO UPDATE SET full_name = EXCLUDED.full_name, gender = EXCLUDED.gender, nationality = EXCLUDED.nationality, age_group = EXCLUDED.age_group";
+        }
+        IntKeyMap keys;
+        if (engine == TransformEngine.SQL) {
+            if (mode == EtlMode.FULL) {
+                warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_student CASCADE");
+            }
+            long loadStart = System.nanoTime();
+            keys = warehouseJdbcTemplate.query("INSERT INTO " + table + " (" + STUDENT_COLUMNS + ") " + studentTransform(today) + upsert + Dimension.STUDENT.returning(), SurrogateKeyCache.KEY_COLLECTOR);
+            metrics.recordPhase("dim_student", "load", keys.size(), keys.size(), 0, System.nanoTime() - loadStart);
+        } else {
+            long transformStart = System.nanoTime();
+            List<StudentDTO> stagedData = warehouseJdbcTemplate.query("SELECT student_id, first_name, last_name, gender, nationality, date_of_birth FROM staging.stg_students", (rs, rowNum) -> new StudentDTO(rs.getInt("student_id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("gender"), rs.getString("nationality"), rs.getObject("date_of_birth", LocalDate.class)));
+            List<Object[]> transformedData = stagedData.stream()
+                .map(dto -> new Object[]{ dto.id(), EtlTransforms.fullName(dto.firstName(), dto.lastName()), dto.gender(), dto.nationality(), EtlTransforms.ageGroup(dto.dateOfBirth(), today) })
+                .collect(Collectors.toList());
+            metrics.recordPhase("dim_student", "transform", stagedData.size(), transformedData.size(), 0, System.nanoTime() - transformStart);
+
+            if (mode == EtlMode.FULL) {
+                warehouseJdbcTemplate.execute("TRUNCATE TABLE dim_student CASCADE");
+            }
+            long loadStart = System.nanoTime();
+            keys = insertReturningKeys("INSERT INTO " + table + " (" + STUDENT_COLUMNS + ") SELECT * FROM unnest(?, ?, ?, ?, ?)" + upsert + Dimension.STUDENT.returning(), transformedData, "int4", "varchar", "varchar", "varchar", "varchar");
+            metrics.recordPhase("dim_student", "load", transformedData.size(), keys.size(), 0, System.nanoTime() - loadStart);
+            if (engine == TransformEngine.VERIFY) {
+                verifyDimension("dim_student", table, STUDENT_COLUMNS, "student_id", "staging.stg_students", studentTransform(today));
+            }
+        }
+        finishTarget(mode, "dim_student");
+        publishKeys(mode, Dimension.STUDENT, keys);
+        advanceWatermark(mode, "students", extractedAt);
+        log.info("Successfully loaded {} records into dim_student.", keys.size());
+        return keys.size();
+    }
+
+    // fact_enrollment is partitioned by academic year and every year a run touches is rebuilt
+    // whole, off to the side, then exchanged for the live partition (see PartitionManager).
+    // INCREMENTAL runs work out the touched years from the changed enrollments (including
+    // the year a changed enrollment used to be in) and restage those years in full. A changed
+    // course counts as a change to each of its enrollments, since the facts carry its
+    // department and fee.
+    //
+    // Progress is checkpointed: the extract (with the years it covers), every chunk in the
+    // same transaction as its rows, and every finished year. A resumed attempt skips all of
+    // it, so a failure late in a large load only redoes the chunks that had not committed.
+    public int loadFactEnrollment(EtlMode mode, StepCheckpoints checkpoints) {
+        log.info("--- Starting ETL for Fact_Enrollment ({})... ---", mode);
+        OffsetDateTime extractedAt;
+        List<Integer> academicYears;
+        Optional<OffsetDateTime> resumedExtract = checkpoints.extractedAt();
+        if (resumedExtract.isPresent()) {
+            extractedAt = resumedExtract.get();
+            academicYears = checkpoints.withPrefix(YEAR_CHECKPOINT).stream().map(checkpoint -> Integer.parseInt(checkpoint.substring(YEAR_CHECKPOINT.length()))).sorted().toList();
+            log.info("[1/2] Resuming from the staged extract of {} (academic years {}).", extractedAt, academicYears);
+        } else {
+            // STAGE 1: Extract to Staging (occurs in a separate method call)
+            log.info("[1/2] Extracting data into staging.stg_enrollments...");
+            // The course's department and fee are joined in at the source, so an incremental
+            // run can build facts for changed enrollments without restaging every course
+            String extractSql = "SELECT e.enrollment_id, e.student_id, e.course_id, e.lecturer_id, e.academic_year, e.semester, e.final_grade, e.status, c.department_id, c.tuition_fee " +
+                                "FROM enrollments e JOIN courses c ON e.course_id = c.course_id";
+            String stagingColumns = "enrollment_id, student_id, course_id, lecturer_id, academic_year, semester, final_grade, status, department_id, tuition_fee";
+            extractedAt = extract("fact_enrollment", mode, "enrollments", "e.last_updated, c.last_updated", extractSql, "staging.stg_enrollments", stagingColumns);
+            if (mode != EtlMode.INCREMENTAL) {
+                academicYears = warehouseJdbcTemplate.queryForList("SELECT DISTINCT academic_year FROM staging.stg_enrollments ORDER BY academic_year", Integer.class);
+            } else {
+                academicYears = touchedAcademicYears();
+                if (academicYears.isEmpty()) {
+                    advanceWatermark(mode, "enrollments", extractedAt);
+                    log.info("No enrollment changes, fact_enrollment is up to date.");
+                    return 0;
+                }
+                String years = academicYears.stream().map(String::valueOf).collect(Collectors.joining(", "));
+                log.info("Restaging academic years {} to rebuild their partitions.", years);
+                stage("fact_enrollment", extractSql + " WHERE e.academic_year IN (" + years + ")", "staging.stg_enrollments", stagingColumns);
+            }
+            List<Integer> stagedYears = academicYears;
+            warehouseTransactionTemplate.executeWithoutResult(status -> {
+                for (int academicYear : stagedYears) {
+                    checkpoints.record(YEAR_CHECKPOINT + academicYear, 0);
+                }
+                checkpoints.recordExtract(stagedYears.size(), extractedAt);
+            });
+        }
 
         // STAGE 2: Transform & Load from Staging
-        log.info("[2/2] Transforming and loading data from staging into fact_enrollment...");
-        Map<Integer, Integer> studentKeyMap = loadDimensionMap("SELECT student_id, student_key FROM dim_student");
-        Map<Integer, Integer> courseKeyMap = loadDimensionMap("SELECT course_id, course_key FROM dim_course");
-        Map<Integer, Integer> lecturerKeyMap = loadDimensionMap("SELECT lecturer_id, lecturer_key FROM dim_lecturer");
-        Map<Integer, Integer> departmentKeyMap = loadDimensionMap("SELECT department_id, department_key FROM dim_department");
-        log.info("Dimension key maps loaded into memory.");
-
-        // The new source for facts is a JOIN between staging tables
-        String transformSql = "SELECT se.student_id, se.course_id, se.lecturer_id, se.academic_year, se.semester, " +
-                              "se.final_grade, se.status, sc.department_id, sc.tuition_fee " +
-                              "FROM staging.stg_enrollments se JOIN staging.stg_courses sc ON se.course_id = sc.course_id";
-
-        // The EnrollmentDTO now reads from the staging join result
-        List<Object[]> factRecords = warehouseJdbcTemplate.query(transformSql, (rs, rowNum) -> {
-            BigDecimal finalGradeBd = rs.getBigDecimal("final_grade");
-            Double finalGrade = (finalGradeBd == null) ? null : finalGradeBd.doubleValue();
-
-            // Transform data for the fact table record
-            LocalDate factDate = (rs.getInt("semester") == 1) ? LocalDate.of(rs.getInt("academic_year"), 9, 1) : LocalDate.of(rs.getInt("academic_year") + 1, 2, 1);
-            Integer dateKey = Integer.parseInt(factDate.format(DateTimeFormatter.ofPattern("yyyyMMdd")));
-            Integer studentKey = studentKeyMap.get(rs.getInt("student_id"));
-            Integer courseKey = courseKeyMap.get(rs.getInt("course_id"));
-            Integer lecturerKey = lecturerKeyMap.get(rs.getInt("lecturer_id"));
-            Integer departmentKey = departmentKeyMap.get(rs.getInt("department_id"));
-            int isPassed = "Passed".equalsIgnoreCase(rs.getString("status")) ? 1 : 0;
-            
-            if (studentKey != null && courseKey != null && lecturerKey != null && departmentKey != null) {
-                return new Object[]{ dateKey, studentKey, courseKey, departmentKey, lecturerKey, finalGrade, rs.getBigDecimal("tuition_fee"), 1, isPassed };
+        TransformEngine engine = engine("fact_enrollment");
+        log.info("[2/2] Transforming and loading data from staging into {} academic-year partitions ({} transform)...", academicYears.size(), engine);
+        // Published by the dimension loaders earlier in this run; the SQL engine joins the tables instead
+        FactKeyMaps keyMaps = engine == TransformEngine.SQL ? null :
+                              new FactKeyMaps(keyCache.keys(Dimension.STUDENT), keyCache.keys(Dimension.COURSE),
+                                              keyCache.keys(Dimension.LECTURER), keyCache.keys(Dimension.DEPARTMENT));
+        String factTransform = factTransform(mode);
+        Map<Integer, String> rebuiltTables = new HashMap<>();
+
+        // Each enrollment_id range of each year is transformed and written by its own task, so
+        // throughput follows the chunk executor and at most (threads x chunk size) rows are in memory
+        List<Future<FactChunk>> pending = new ArrayList<>();
+        Set<Integer> builtYears = new HashSet<>();
+        int resumedRows = 0;
+        try {
+            for (int academicYear : academicYears) {
+                List<IdRange> chunks = planFactChunks(academicYear);
+                Set<String> planned = chunks.stream().map(range -> chunkCheckpoint(academicYear, range)).collect(Collectors.toSet());
+                Set<String> committed = checkpoints.withPrefix(CHUNK_CHECKPOINT + academicYear + ":");
+                // Committed chunks only count while their table survives and the chunking still lines up
+                boolean resume = !committed.isEmpty() && planned.containsAll(committed) && partitionManager.hasRebuiltAcademicYear("fact_enrollment", academicYear);
+                if (!resume) {
+                    committed = Set.of();
+                } else if (checkpoints.contains(BUILT_CHECKPOINT + academicYear)) {
+                    builtYears.add(academicYear);
+                }
+                String rebuiltTable = partitionManager.prepareAcademicYear("fact_enrollment", academicYear, resume);
+                rebuiltTables.put(academicYear, rebuiltTable);
+                String loadSql = "INSERT INTO " + rebuiltTable + " (" + FACT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                log.info("Transforming {} chunks of up to {} enrollments for academic year {} ({} already committed).", chunks.size(), factChunkSize, academicYear, committed.size());
+                for (IdRange range : chunks) {
+                    String checkpoint = chunkCheckpoint(academicYear, range);
+                    if (committed.contains(checkpoint)) {
+                        resumedRows += (int) checkpoints.rows(checkpoint);
+                        continue;
+                    }
+                    // Executor futures, so cancelling one interrupts the chunk that is running it
+                    pending.add(etlChunkExecutor.submit(() -> engine == TransformEngine.SQL
+                        ? pushDownFactChunk(academicYear, range, rebuiltTable, factTransform, checkpoints, checkpoint)
+                        : loadFactChunk(academicYear, range, keyMaps, loadSql, checkpoints, checkpoint)));
+                }
+            }
+            int loaded = 0;
+            int skipped = 0;
+            long transformNanos = 0;
+            long loadNanos = 0;
+            try {
+                for (Future<FactChunk> chunk : pending) {
+                    FactChunk result = chunk.get();
+                    loaded += result.loaded();
+                    skipped += result.skipped();
+                    transformNanos += result.transformNanos();
+                    loadNanos += result.loadNanos();
+                }
+            } catch (ExecutionException e) {
+                pending.forEach(chunk -> chunk.cancel(true));
+                throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                // The task graph cancelled this step; the chunks go with it
+                pending.forEach(chunk -> chunk.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new CancellationException("ETL step 'fact_enrollment' was cancelled");
+            }
+            metrics.recordPhase("fact_enrollment", "transform", loaded + skipped, loaded, skipped, transformNanos);
+            metrics.recordPhase("fact_enrollment", "load", loaded, loaded, 0, loadNanos);
+            if (skipped > 0) {
+                log.warn("Skipped {} enrollments with missing dimension keys (details at DEBUG).", skipped);
+            }
+            if (engine == TransformEngine.VERIFY) {
+                // Whole years, so chunks committed by an earlier attempt are checked too
+                for (int academicYear : academicYears) {
+                    verify("fact_enrollment", "SELECT " + FACT_COLUMNS + " FROM " + rebuiltTables.get(academicYear), factTransform, academicYear);
+                }
+            }
+            for (int academicYear : academicYears) {
+                if (!builtYears.contains(academicYear)) {
+                    partitionManager.finishAcademicYear("fact_enrollment", academicYear);
+                    checkpoints.record(BUILT_CHECKPOINT + academicYear, 0);
+                }
+            }
+
+            if (mode == EtlMode.SHADOW) {
+                // Exchanged together with the dimensions whose keys these rows carry
+                pendingFactYears = academicYears;
             } else {
-                log.warn("Skipping fact record due to missing key. StudentId: {}, CourseId: {}", rs.getInt("student_id"), rs.getInt("course_id"));
-                return null;
+                // A full load replaces the whole table, so years that vanished from the source go too
+                partitionManager.exchangeAcademicYears("fact_enrollment", academicYears, mode == EtlMode.FULL);
             }
+            advanceWatermark(mode, "enrollments", extractedAt);
+            log.info("Successfully loaded {} records into fact_enrollment ({} from earlier attempts).", loaded + resumedRows, resumedRows);
+            return loaded + resumedRows;
+        } catch (RuntimeException e) {
+            // Rebuilt years stay behind for the next attempt to resume, except in SHADOW mode,
+            // whose failed runs are discarded and start over
+            if (mode == EtlMode.SHADOW) {
+                partitionManager.discardAcademicYears("fact_enrollment", academicYears);
+            }
+            throw e;
+        }
+    }
+
+    private static String chunkCheckpoint(int academicYear, IdRange range) {
+        return CHUNK_CHECKPOINT + academicYear + ":" + range.from() + "-" + range.to();
+    }
+
+    // Years of the staged (changed) enrollments, plus the years their current facts sit in,
+    // so an enrollment that moved to another year also leaves its old partition
+    private List<Integer> touchedAcademicYears() {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT academic_year FROM staging.stg_enrollments " +
+            "UNION " +
+            "SELECT CASE WHEN f.date_key % 10000 >= 901 THEN f.date_key / 10000 ELSE f.date_key / 10000 - 1 END " +
+            "FROM fact_enrollment f JOIN staging.stg_enrollments se ON se.enrollment_id = f.enrollment_id " +
+            "ORDER BY 1", Integer.class);
+    }
+
+    // Splits one academic year of staging into consecutive enrollment_id ranges of factChunkSize rows each.
+    // Boundaries come from the data itself, so sparse years give no empty chunks.
+    private List<IdRange> planFactChunks(int academicYear) {
+        List<Integer> starts = warehouseJdbcTemplate.queryForList(
+            "SELECT enrollment_id FROM (SELECT enrollment_id, row_number() OVER (ORDER BY enrollment_id) AS rn FROM staging.stg_enrollments WHERE academic_year = ?) numbered " +
+            "WHERE (rn - 1) % ? = 0 ORDER BY enrollment_id", Integer.class, academicYear, factChunkSize);
+        if (starts.isEmpty()) {
+            return List.of();
+        }
+        Integer lastId = warehouseJdbcTemplate.queryForObject("SELECT max(enrollment_id) FROM staging.stg_enrollments WHERE academic_year = ?", Integer.class, academicYear);
+        List<IdRange> ranges = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            int to = (i + 1 < starts.size()) ? starts.get(i + 1) - 1 : lastId;
+            ranges.add(new IdRange(starts.get(i), to));
+        }
+        return ranges;
+    }
+
+    private FactChunk loadFactChunk(int academicYear, IdRange range, FactKeyMaps keyMaps, String loadSql, StepCheckpoints checkpoints, String checkpoint) {
+        checkNotCancelled("fact_enrollment");
+        String transformSql = "SELECT se.enrollment_id, se.student_id, se.course_id, se.lecturer_id, se.academic_year, se.semester, " +
+                              "se.final_grade, se.status, se.department_id, se.tuition_fee " +
+                              "FROM staging.stg_enrollments se WHERE se.academic_year = ? AND se.enrollment_id BETWEEN ? AND ?";
+
+        long transformStart = System.nanoTime();
+        TransformedChunk chunk = warehouseJdbcTemplate.query(transformSql, rs -> {
+            List<Object[]> rows = new ArrayList<>();
+            int skipped = 0;
+            while (rs.next()) {
+                int studentKey = keyMaps.student().get(rs.getInt("student_id"));
+                int courseKey = keyMaps.course().get(rs.getInt("course_id"));
+                int lecturerKey = keyMaps.lecturer().get(rs.getInt("lecturer_id"));
+                int departmentKey = keyMaps.department().get(rs.getInt("department_id"));
+                if (studentKey == IntKeyMap.MISSING || courseKey == IntKeyMap.MISSING || lecturerKey == IntKeyMap.MISSING || departmentKey == IntKeyMap.MISSING) {
+                    log.debug("Skipping fact record due to missing key. StudentId: {}, CourseId: {}", rs.getInt("student_id"), rs.getInt("course_id"));
+                    skipped++;
+                    continue;
+                }
+                BigDecimal finalGradeBd = rs.getBigDecimal("final_grade");
+                Double finalGrade = (finalGradeBd == null) ? null : finalGradeBd.doubleValue();
+                int dateKey = EtlTransforms.enrollmentDateKey(rs.getInt("academic_year"), rs.getInt("semester"));
+                int isPassed = EtlTransforms.passedFlag(rs.getString("status"));
+                rows.add(new Object[]{ rs.getInt("enrollment_id"), dateKey, studentKey, courseKey, departmentKey, lecturerKey, finalGrade, rs.getBigDecimal("tuition_fee"), 1, isPassed });
+            }
+            return new TransformedChunk(rows, skipped);
+        }, academicYear, range.from(), range.to());
+
+        checkNotCancelled("fact_enrollment");
+        long loadStart = System.nanoTime();
+        // The rows and their checkpoint commit together, so a chunk is either done or not started
+        warehouseTransactionTemplate.executeWithoutResult(status -> {
+            warehouseJdbcTemplate.batchUpdate(loadSql, chunk.rows());
+            checkpoints.record(checkpoint, chunk.rows().size());
+        });
+        long loadEnd = System.nanoTime();
+        log.debug("Loaded enrollments {}-{} of academic year {}: {} rows.", range.from(), range.to(), academicYear, chunk.rows().size());
+        return new FactChunk(chunk.rows().size(), chunk.skipped(), loadStart - transformStart, loadEnd - loadStart);
+    }
+
+    // The SQL engine's chunk: one INSERT ... SELECT, so the rows never leave the database.
+    // Enrollments whose keys do not resolve drop out of the joins and count as skipped.
+    private FactChunk pushDownFactChunk(int academicYear, IdRange range, String rebuiltTable, String factTransform, StepCheckpoints checkpoints, String checkpoint) {
+        checkNotCancelled("fact_enrollment");
+        String loadSql = "INSERT INTO " + rebuiltTable + " (" + FACT_COLUMNS + ") " + factTransform + " AND se.enrollment_id BETWEEN ? AND ?";
+        long loadStart = System.nanoTime();
+        int staged = warehouseJdbcTemplate.queryForObject("SELECT count(*) FROM staging.stg_enrollments WHERE academic_year = ? AND enrollment_id BETWEEN ? AND ?",
+                                                          Integer.class, academicYear, range.from(), range.to());
+        int loaded = warehouseTransactionTemplate.execute(status -> {
+            int inserted = warehouseJdbcTemplate.update(loadSql, academicYear, range.from(), range.to());
+            checkpoints.record(checkpoint, inserted);
+            return inserted;
         });
-        // Filter out any null records that were skipped
-        factRecords.removeIf(record -> record == null);
-        log.info("Transformed {} records.", factRecords.size());
+        log.debug("Loaded enrollments {}-{} of academic year {}: {} rows.", range.from(), range.to(), academicYear, loaded);
+        // Transform and load are one statement, so all of it is load time
+        return new FactChunk(loaded, staged - loaded, 0, System.nanoTime() - loadStart);
+    }
 
-        warehouseJdbcTemplate.execute("TRUNCATE TABLE fact_enrollment");
-        String loadSql = "INSERT INTO fact_enrollment (date_key, student_key, course_key, department_key, lecturer_key, final_grade, tuition_fee, enrollment_count, is_passed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        warehouseJdbcTemplate.batchUpdate(loadSql, factRecords);
-        log.info("Successfully loaded {} records into fact_enrollment.", factRecords.size());
+    // Ages are bucketed against the JVM's today in both engines; the literal is our own ISO date
+    private static String studentTransform(LocalDate today) {
+        return "SELECT student_id, " + EtlTransforms.fullNameSql("first_name", "last_name") + ", gender, nationality, " +
+               EtlTransforms.ageGroupSql("date_of_birth", "DATE '" + today + "'") + " FROM staging.stg_students";
     }
 
-    private Map<Integer, Integer> loadDimensionMap(String sql) {
-        return warehouseJdbcTemplate.query(sql, rs -> {
-            Map<Integer, Integer> map = new java.util.HashMap<>();
-            while (rs.next()) { map.put(rs.getInt(1), rs.getInt(2)); }
-            return map;
+    // Fact rows of one staged academic year as the SQL engine builds them. The keys come from the
+    // dimensions this run loaded: the live tables, or for SHADOW their copies.
+    private static String factTransform(EtlMode mode) {
+        return "SELECT se.enrollment_id, " + EtlTransforms.enrollmentDateKeySql("se.academic_year", "se.semester") + ", " +
+               "ds.student_key, dc.course_key, dp.department_key, dl.lecturer_key, se.final_grade, se.tuition_fee, 1, " + EtlTransforms.passedFlagSql("se.status") + " " +
+               "FROM staging.stg_enrollments se " +
+               "JOIN " + loadedDimension(mode, "dim_student") + " ds ON ds.student_id = se.student_id " +
+               "JOIN " + loadedDimension(mode, "dim_course") + " dc ON dc.course_id = se.course_id " +
+               "JOIN " + loadedDimension(mode, "dim_lecturer") + " dl ON dl.lecturer_id = se.lecturer_id " +
+               "JOIN " + loadedDimension(mode, "dim_department") + " dp ON dp.department_id = se.department_id " +
+               "WHERE se.academic_year = ?";
+    }
+
+    private static String loadedDimension(EtlMode mode, String table) {
+        return mode == EtlMode.SHADOW ? ShadowTables.shadowName(table) : table;
+    }
+
+    // Payments are append-only and can be large, so they never pass through the JVM: COPY
+    // into staging, then one INSERT ... SELECT that resolves the keys by joining the live
+    // dimensions. INCREMENTAL runs append past the highest loaded payment_id, and re-read the
+    // lookback window of payment_date for inserts that committed after a higher id was
+    // loaded. FULL and SHADOW rebuild the table in one transaction, because the dimensions
+    // they reload hand out new surrogate keys; SHADOW must therefore run after the swap.
+    // Payments whose student or day has no dimension row yet are kept in
+    // fact_payment_unresolved, and the high-water mark stays below the lowest of them.
+    public int loadFactPayments(EtlMode mode) {
+        log.info("--- Starting ETL for Fact_Payment ({})... ---", mode);
+        // STAGE 1: Extract to Staging
+        log.info("[1/2] Extracting data into staging.stg_payments...");
+        // Payments are attributed to the department of the student's latest enrollment
+        String extractSql = "SELECT p.payment_id, p.student_id, p.amount_paid, p.payment_date, " +
+                            "(SELECT c.department_id FROM enrollments e JOIN courses c ON e.course_id = c.course_id " +
+                            " WHERE e.student_id = p.student_id ORDER BY e.academic_year DESC, e.semester DESC, e.enrollment_id DESC LIMIT 1) AS department_id " +
+                            "FROM payments p";
+        if (mode == EtlMode.INCREMENTAL) {
+            // Unresolved payments are re-extracted until they load; LEAST skips the NULL when there are none
+            PaymentMark mark = warehouseJdbcTemplate.queryForObject(
+                "SELECT LEAST(max(payment_id), (SELECT min(payment_id) - 1 FROM fact_payment_unresolved)), max(payment_date) FROM fact_payment",
+                (rs, rowNum) -> new PaymentMark(rs.getInt(1), rs.getObject(2, OffsetDateTime.class)));
+            if (mark.lastDate() != null) {
+                // COPY cannot take bind parameters; both literals are our own values
+                extractSql += " WHERE p.payment_id > " + mark.lastId() + " OR p.payment_date > '" + mark.lastDate().minus(watermarkStore.lookback()) + "'::timestamptz";
+            } else {
+                log.info("No payments loaded yet, extracting every row.");
+            }
+        }
+        long staged = stage("fact_payment", extractSql, "staging.stg_payments", "payment_id, student_id, amount_paid, payment_date, department_id");
+
+        // STAGE 2: Load from Staging
+        log.info("[2/2] Loading data from staging into fact_payment...");
+        List<YearMonth> months = warehouseJdbcTemplate.queryForList(
+            "SELECT DISTINCT CAST(date_trunc('month', payment_date AT TIME ZONE 'UTC') AS date) FROM staging.stg_payments", LocalDate.class)
+            .stream().map(YearMonth::from).toList();
+        partitionManager.ensureMonthly("fact_payment", months);
+        String loadSql = "INSERT INTO fact_payment (payment_id, payment_date, date_key, student_key, department_key, amount_paid) " +
+                         "SELECT sp.payment_id, sp.payment_date, dd.date_key, ds.student_key, dp.department_key, sp.amount_paid " +
+                         "FROM staging.stg_payments sp " +
+                         "JOIN dim_student ds ON ds.student_id = sp.student_id " +
+                         "JOIN dim_date dd ON dd.date_key = CAST(to_char(sp.payment_date AT TIME ZONE 'UTC', 'YYYYMMDD') AS INT) " +
+                         "LEFT JOIN dim_department dp ON dp.department_id = sp.department_id";
+        long loadStart = System.nanoTime();
+        // Readers keep the previous payments until the load commits, together with the payments it left unresolved
+        int[] rows = warehouseTransactionTemplate.execute(status -> {
+            int inserted;
+            if (mode == EtlMode.INCREMENTAL) {
+                // Rows from the lookback window are usually loaded already
+                inserted = warehouseJdbcTemplate.update(loadSql + " ON CONFLICT (payment_id, payment_date) DO NOTHING");
+            } else {
+                warehouseJdbcTemplate.execute("TRUNCATE TABLE fact_payment");
+                inserted = warehouseJdbcTemplate.update(loadSql);
+            }
+            // Every payment left unresolved before was extracted again, so the set is replaced
+            warehouseJdbcTemplate.update("DELETE FROM fact_payment_unresolved");
+            int unresolved = warehouseJdbcTemplate.update(
+                "INSERT INTO fact_payment_unresolved (payment_id, payment_date) " +
+                "SELECT sp.payment_id, sp.payment_date FROM staging.stg_payments sp " +
+                "WHERE NOT EXISTS (SELECT 1 FROM fact_payment f WHERE f.payment_id = sp.payment_id AND f.payment_date = sp.payment_date)");
+            return new int[] { inserted, unresolved };
         });
+        int loaded = rows[0];
+        int missingKeys = rows[1];
+        metrics.recordPhase("fact_payment", "load", staged, loaded, missingKeys, System.nanoTime() - loadStart);
+        if (missingKeys > 0) {
+            log.warn("Held back {} payments with no matching student or date dimension row; the next INCREMENTAL run retries them.", missingKeys);
+        }
+        log.info("Successfully loaded {} records into fact_payment across {} monthly partitions.", loaded, months.size());
+        return loaded;
+    }
+
+    // Streams one source table into its staging table and returns the source clock to record
+    // as the table's watermark once the load succeeds. INCREMENTAL runs only copy rows where
+    // any of the (comma-separated) change columns moved past the stored watermark; without
+    // one they fall back to everything.
+    private OffsetDateTime extract(String step, EtlMode mode, String sourceTable, String changeColumns, String selectSql, String stagingTable, String columns) {
+        // Everything read through the run's snapshot is as of the snapshot's clock
+        OffsetDateTime extractedAt = stagingCopier.snapshotClock().orElseGet(watermarkStore::sourceClock);
+        String extractSql = selectSql;
+        if (mode == EtlMode.INCREMENTAL) {
+            Optional<OffsetDateTime> since = watermarkStore.changedSince(sourceTable);
+            if (since.isPresent()) {
+                // COPY cannot take bind parameters; the literal is our own ISO timestamp
+                String changed = " > '" + since.get() + "'::timestamptz";
+                extractSql += " WHERE " + Arrays.stream(changeColumns.split(",\\s*")).map(column -> column + changed).collect(Collectors.joining(" OR "));
+            } else {
+                log.info("No watermark recorded for {}, extracting every row.", sourceTable);
+            }
+        }
+        stage(step, extractSql, stagingTable, columns);
+        return extractedAt;
+    }
+
+    private long stage(String step, String extractSql, String stagingTable, String columns) {
+        checkNotCancelled(step);
+        warehouseJdbcTemplate.execute("TRUNCATE TABLE " + stagingTable);
+        long extractStart = System.nanoTime();
+        long extracted = stagingCopier.copy(extractSql, stagingTable, columns);
+        // COPY streams source rows straight into staging, so extract and stage are one phase
+        metrics.recordPhase(step, "extract", extracted, extracted, 0, System.nanoTime() - extractStart);
+        checkNotCancelled(step);
+        return extracted;
+    }
+
+    // Checked between units of work: once a failed run has cancelled this step, it stops here
+    // rather than loading what it extracted (a JDBC call in progress does not see the interrupt)
+    private static void checkNotCancelled(String step) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("ETL step '" + step + "' was cancelled");
+        }
+    }
+
+    // Atomically replaces the live tables with the copies loaded by a SHADOW run
+    public void swapShadowTables() {
+        log.info("--- Swapping shadow tables into place... ---");
+        shadowTables.swap(SHADOW_TABLES, () -> {
+            partitionManager.exchangeAcademicYears("fact_enrollment", pendingFactYears, true);
+            pendingFactYears = List.of();
+            pendingWatermarks.forEach(watermarkStore::advance);
+            pendingWatermarks.clear();
+        });
+    }
+
+    // After a failed SHADOW run: the live tables never changed, but the key cache holds the copies' keys
+    public void discardShadowTables() {
+        shadowTables.discard(SHADOW_TABLES);
+        partitionManager.discardAcademicYears("fact_enrollment", pendingFactYears);
+        pendingFactYears = List.of();
+        pendingWatermarks.clear();
+        for (Dimension dimension : Dimension.values()) {
+            keyCache.invalidate(dimension);
+        }
+    }
+
+    // app.etl.transform.engine.<step> overrides the default engine for one step
+    private TransformEngine engine(String step) {
+        return environment.getProperty("app.etl.transform.engine." + step, TransformEngine.class, defaultEngine);
+    }
+
+    // Only the staged ids are compared, since an INCREMENTAL load leaves the other rows alone
+    private void verifyDimension(String step, String table, String columns, String idColumn, String stagingTable, String transformSql, Object... args) {
+        verify(step, "SELECT " + columns + " FROM " + table + " WHERE " + idColumn + " IN (SELECT " + idColumn + " FROM " + stagingTable + ")", transformSql, args);
+    }
+
+    // TransformEngine.VERIFY: the rows the Java transform loaded must be exactly the rows the SQL
+    // transform selects, duplicates included; otherwise the step fails before anything is published
+    private void verify(String step, String loadedSql, String transformSql, Object... args) {
+        long start = System.nanoTime();
+        Object[] bothArgs = new Object[args.length * 2];
+        System.arraycopy(args, 0, bothArgs, 0, args.length);
+        System.arraycopy(args, 0, bothArgs, args.length, args.length);
+        long[] mismatches = warehouseJdbcTemplate.queryForObject(
+            "SELECT (SELECT count(*) FROM (" + loadedSql + " EXCEPT ALL " + transformSql + ") java_only), " +
+            "(SELECT count(*) FROM (" + transformSql + " EXCEPT ALL " + loadedSql + ") sql_only)",
+            (rs, rowNum) -> new long[]{ rs.getLong(1), rs.getLong(2) }, bothArgs);
+        if (mismatches[0] > 0 || mismatches[1] > 0) {
+            throw new IllegalStateException(String.format("%s: the Java and SQL transforms disagree, %d loaded rows have no SQL counterpart and %d SQL rows were not loaded",
+                                                          step, mismatches[0], mismatches[1]));
+        }
+        log.info("Verified {} against the SQL transform in {} ms.", step, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // The table a load writes to: the live one, or for SHADOW a fresh empty copy of it
+    private String target(EtlMode mode, String table) {
+        return mode == EtlMode.SHADOW ? shadowTables.prepare(table) : table;
+    }
+
+    // Shadow copies are loaded without keys or indexes; they are built once the rows are in
+    private void finishTarget(EtlMode mode, String table) {
+        if (mode == EtlMode.SHADOW) {
+            shadowTables.buildIndexes(table);
+        }
+    }
+
+    private void advanceWatermark(EtlMode mode, String sourceTable, OffsetDateTime extractedAt) {
+        if (mode == EtlMode.SHADOW) {
+            pendingWatermarks.put(sourceTable, extractedAt);
+        } else {
+            watermarkStore.advance(sourceTable, extractedAt);
+        }
+    }
+
+    private void publishKeys(EtlMode mode, Dimension dimension, IntKeyMap keys) {
+        if (mode != EtlMode.INCREMENTAL) {
+            keyCache.replace(dimension, keys);
+        } else {
+            keyCache.merge(dimension, keys);
+        }
+    }
+
+    // Sends rows column-wise as arrays through unnest(), one statement per batch, so the
+    // INSERT can RETURN the generated surrogate keys (a JDBC batch cannot)
+    private IntKeyMap insertReturningKeys(String sql, List<Object[]> rows, String... columnTypes) {
+        IntKeyMap keys = new IntKeyMap(rows.size());
+        for (int from = 0; from < rows.size(); from += dimensionBatchSize) {
+            List<Object[]> batch = rows.subList(from, Math.min(from + dimensionBatchSize, rows.size()));
+            IntKeyMap batchKeys = warehouseJdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                for (int column = 0; column < columnTypes.length; column++) {
+                    // Typed arrays so the driver encodes int4[] / varchar[] directly
+                    Object[] values = "int4".equals(columnTypes[column]) ? new Integer[batch.size()] : new String[batch.size()];
+                    for (int row = 0; row < values.length; row++) {
+                        values[row] = batch.get(row)[column];
+                    }
+                    ps.setArray(column + 1, con.createArrayOf(columnTypes[column], values));
+                }
+                return ps;
+            }, SurrogateKeyCache.KEY_COLLECTOR);
+            batchKeys.forEach(keys::put);
+        }
+        return keys;
     }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.university.warehouse_etl.service;
+
+import java.time.LocalDate;
+import java.time.Period;
+
+// Per-row transforms shared by the loaders. Kept free of formatters and boxing because
+// they run once for every staged row. Each transform the SQL engine pushes down has a
+// *Sql twin that builds the same expression over column names; keep the pairs in step,
+// TransformEngine.VERIFY compares their output.
+public final class EtlTransforms {
+
+    private EtlTransforms() {
+    }
+
+    // yyyyMMdd as an int, e.g. 2024-09-01 -> 20240901
+    public static int dateKey(int year, int month, int day) {
+        return year * 10000 + month * 100 + day;
+    }
+
+    public static int dateKey(LocalDate date) {
+        return dateKey(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    // Semester 1 enrollments are dated 1 September of the academic year,
+    // anything later 1 February of the following calendar year
+    public static int enrollmentDateKey(int academicYear, int semester) {
+        return semester == 1 ? dateKey(academicYear, 9, 1) : dateKey(academicYear + 1, 2, 1);
+    }
+
+    // Academic years start in September: 2024-10-01 -> "2024/2025", 2025-03-01 -> "2024/2025"
+    public static String academicYear(LocalDate date) {
+        int startYear = date.getMonthValue() >= 9 ? date.getYear() : date.getYear() - 1;
+        return startYear + "/" + (startYear + 1);
+    }
+
+    // September-December is Semester 1, January-May Semester 2, June-August Summer
+    public static String semester(LocalDate date) {
+        int month = date.getMonthValue();
+        if (month >= 9) {
+            return "Semester 1";
+        }
+        return month <= 5 ? "Semester 2" : "Summer";
+    }
+
+    public static String enrollmentDateKeySql(String academicYear, String semester) {
+        return "CASE WHEN " + semester + " = 1 THEN " + academicYear + " * 10000 + 901 ELSE (" + academicYear + " + 1) * 10000 + 201 END";
+    }
+
+    // A missing part is left out, as concat_ws does, rather than spelled "null"
+    public static String fullName(String firstName, String lastName) {
+        if (firstName == null) {
+            return lastName == null ? "" : lastName;
+        }
+        return lastName == null ? firstName : firstName + " " + lastName;
+    }
+
+    public static String fullNameSql(String firstName, String lastName) {
+        return "concat_ws(' ', " + firstName + ", " + lastName + ")";
+    }
+
+    // Age on the given day, bucketed the way dim_student reports it; no birth date, no group
+    public static String ageGroup(LocalDate dateOfBirth, LocalDate asOf) {
+        if (dateOfBirth == null) {
+            return null;
+        }
+        int age = Period.between(dateOfBirth, asOf).getYears();
+        if (age <= 21) {
+            return "18-21";
+        }
+        return age <= 25 ? "22-25" : "26+";
+    }
+
+    // age() counts whole years the way Period.between does
+    public static String ageGroupSql(String dateOfBirth, String asOf) {
+        String age = "date_part('year', age(" + asOf + ", " + dateOfBirth + "))";
+        return "CASE WHEN " + dateOfBirth + " IS NULL THEN NULL WHEN " + age + " <= 21 THEN '18-21' WHEN " + age + " <= 25 THEN '22-25' ELSE '26+' END";
+    }
+
+    public static int passedFlag(String status) {
+        return "Passed".equalsIgnoreCase(status) ? 1 : 0;
+    }
+
+    public static String passedFlagSql(String status) {
+        return "CASE WHEN lower(" + status + ") = 'passed' THEN 1 ELSE 0 END";
+    }
+}
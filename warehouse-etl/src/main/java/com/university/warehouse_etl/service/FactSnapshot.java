@@ -0,0 +1,423 @@
+package com.university.warehouse_etl.service;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// fact_enrollment held in memory as primitive columns, one array element per fact row.
+// Dimension references are stored as ordinals into the dimension's own rows, and every
+// dimension attribute is dictionary encoded (ordinal -> code -> value), so a filter or
+// group-by touches only int arrays. Grades and tuition are exact hundredths. Immutable
+// once built, so any number of queries can scan it concurrently.
+public final class FactSnapshot {
+
+    static final int NULL_GRADE = Integer.MIN_VALUE;
+
+    // Below this many rows a scan is not worth splitting across threads
+    private static final int MIN_SEGMENT_ROWS = 65_536;
+    // Group spaces up to this size are accumulated in flat arrays, larger ones in a map
+    private static final int MAX_DENSE_GROUPS = 65_536;
+
+    private static final int COUNT = 0;
+    private static final int PASSED = 1;
+    private static final int GRADED = 2;
+    private static final int GRADE_SUM = 3;
+    private static final int PASSED_GRADED = 4;
+    private static final int PASSED_GRADE_SUM = 5;
+    private static final int TUITION_SUM = 6;
+    private static final int SLOTS = 7;
+
+    // Per dimension: one code array and one dictionary per attribute, indexed by ordinal
+    private record DimensionColumns(int rows, Map<String, int[]> codes, Map<String, String[]> dictionaries) {}
+
+    // A resolved attribute: the fact column to follow and the attribute's encoding
+    private record Column(int[] ordinals, int[] codes, String[] dictionary) {
+        int code(int row) {
+            return codes[ordinals[row]];
+        }
+    }
+
+    private final int rows;
+    private final EnumMap<SnapshotDimension, int[]> ordinals;
+    private final EnumMap<SnapshotDimension, DimensionColumns> dimensions;
+    private final int[] gradeHundredths;
+    private final long[] tuitionCents;
+    private final BitSet passed;
+    private final OffsetDateTime loadedAt;
+
+    private FactSnapshot(int rows, EnumMap<SnapshotDimension, int[]> ordinals, EnumMap<SnapshotDimension, DimensionColumns> dimensions,
+                         int[] gradeHundredths, long[] tuitionCents, BitSet passed, OffsetDateTime loadedAt) {
+        this.rows = rows;
+        this.ordinals = ordinals;
+        this.dimensions = dimensions;
+        this.gradeHundredths = gradeHundredths;
+        this.tuitionCents = tuitionCents;
+        this.passed = passed;
+        this.loadedAt = loadedAt;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public OffsetDateTime loadedAt() {
+        return loadedAt;
+    }
+
+    // Runs the query over `parallelism` segments of the rows on the executor. Groups come
+    // back in no particular order; callers sort the way their report needs.
+    public List<SnapshotGroup> query(SnapshotQuery query, Executor executor, int parallelism) {
+        List<Column> groupColumns = query.groupBy().stream().map(this::column).toList();
+        List<Column> filterColumns = new ArrayList<>();
+        List<boolean[]> allowedCodes = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> filter : query.filters().entrySet()) {
+            Column column = column(filter.getKey());
+            boolean[] allowed = new boolean[column.dictionary().length];
+            for (int code = 0; code < allowed.length; code++) {
+                allowed[code] = filter.getValue().contains(column.dictionary()[code]);
+            }
+            filterColumns.add(column);
+            allowedCodes.add(allowed);
+        }
+        long groupSpace = 1;
+        for (Column column : groupColumns) {
+            groupSpace = Math.multiplyExact(groupSpace, Math.max(1, column.dictionary().length));
+        }
+
+        Scan scan = new Scan(groupColumns, filterColumns, allowedCodes, query.onlyPassed(), query.onlyGraded(), groupSpace);
+        int segments = (int) Math.max(1, Math.min(parallelism, rows / MIN_SEGMENT_ROWS));
+        Accumulator total;
+        if (segments == 1) {
+            total = scan.run(0, rows);
+        } else {
+            int segmentRows = (rows + segments - 1) / segments;
+            List<CompletableFuture<Accumulator>> pending = new ArrayList<>(segments);
+            for (int from = 0; from < rows; from += segmentRows) {
+                int start = from;
+                int end = Math.min(rows, from + segmentRows);
+                pending.add(CompletableFuture.supplyAsync(() -> scan.run(start, end), executor));
+            }
+            total = pending.get(0).join();
+            for (int i = 1; i < pending.size(); i++) {
+                total.merge(pending.get(i).join());
+            }
+        }
+        return total.groups(groupColumns);
+    }
+
+    // Counts the dimension's own rows per attribute value (e.g. students by nationality),
+    // largest first
+    public Map<String, Long> countDimension(String attribute) {
+        DimensionColumns columns = dimensions.get(SnapshotDimension.ofAttribute(attribute));
+        int[] codes = columns.codes().get(SnapshotDimension.column(attribute));
+        String[] dictionary = columns.dictionaries().get(SnapshotDimension.column(attribute));
+        long[] counts = new long[dictionary.length];
+        for (int ordinal = 0; ordinal < columns.rows(); ordinal++) {
+            counts[codes[ordinal]]++;
+        }
+        Integer[] order = new Integer[dictionary.length];
+        Arrays.setAll(order, code -> code);
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int code : order) {
+            if (counts[code] > 0) {
+                result.put(dictionary[code], counts[code]);
+            }
+        }
+        return result;
+    }
+
+    private Column column(String attribute) {
+        SnapshotDimension dimension = SnapshotDimension.ofAttribute(attribute);
+        DimensionColumns columns = dimensions.get(dimension);
+        String name = SnapshotDimension.column(attribute);
+        return new Column(ordinals.get(dimension), columns.codes().get(name), columns.dictionaries().get(name));
+    }
+
+    // One query's row predicate and grouping, shared read-only by all segment scans
+    private final class Scan {
+        private final Column[] groupColumns;
+        private final long[] radix;
+        private final Column[] filterColumns;
+        private final boolean[][] allowedCodes;
+        private final boolean passedOnly;
+        private final boolean gradedOnly;
+        private final long groupSpace;
+
+        Scan(List<Column> groupColumns, List<Column> filterColumns, List<boolean[]> allowedCodes, boolean passedOnly, boolean gradedOnly, long groupSpace) {
+            this.groupColumns = groupColumns.toArray(Column[]::new);
+            this.radix = groupColumns.stream().mapToLong(column -> Math.max(1, column.dictionary().length)).toArray();
+            this.filterColumns = filterColumns.toArray(Column[]::new);
+            this.allowedCodes = allowedCodes.toArray(boolean[][]::new);
+            this.passedOnly = passedOnly;
+            this.gradedOnly = gradedOnly;
+            this.groupSpace = groupSpace;
+        }
+
+        Accumulator run(int from, int to) {
+            Accumulator accumulator = groupSpace <= MAX_DENSE_GROUPS ? new DenseAccumulator((int) groupSpace, radix) : new SparseAccumulator(radix);
+            rows:
+            for (int row = from; row < to; row++) {
+                boolean isPassed = passed.get(row);
+                if (passedOnly && !isPassed) {
+                    continue;
+                }
+                int grade = gradeHundredths[row];
+                if (gradedOnly && grade == NULL_GRADE) {
+                    continue;
+                }
+                for (int f = 0; f < filterColumns.length; f++) {
+                    if (!allowedCodes[f][filterColumns[f].code(row)]) {
+                        continue rows;
+                    }
+                }
+                long group = 0;
+                for (int g = 0; g < groupColumns.length; g++) {
+                    group = group * radix[g] + groupColumns[g].code(row);
+                }
+                long[] slots = accumulator.slots(group);
+                int base = accumulator.base(group);
+                slots[base + COUNT]++;
+                slots[base + TUITION_SUM] += tuitionCents[row];
+                if (isPassed) {
+                    slots[base + PASSED]++;
+                }
+                if (grade != NULL_GRADE) {
+                    slots[base + GRADED]++;
+                    slots[base + GRADE_SUM] += grade;
+                    if (isPassed) {
+                        slots[base + PASSED_GRADED]++;
+                        slots[base + PASSED_GRADE_SUM] += grade;
+                    }
+                }
+            }
+            return accumulator;
+        }
+    }
+
+    // Per-segment aggregates. slots(group) returns the array holding the group's
+    // SLOTS counters starting at base(group).
+    private abstract static class Accumulator {
+        private final long[] radix;
+
+        Accumulator(long[] radix) {
+            this.radix = radix;
+        }
+
+        abstract long[] slots(long group);
+
+        abstract int base(long group);
+
+        abstract void merge(Accumulator other);
+
+        abstract void forEachGroup(GroupConsumer consumer);
+
+        List<SnapshotGroup> groups(List<Column> groupColumns) {
+            List<SnapshotGroup> groups = new ArrayList<>();
+            forEachGroup((group, slots, base) -> {
+                if (slots[base + COUNT] == 0) {
+                    return;
+                }
+                String[] keys = new String[radix.length];
+                long remaining = group;
+                for (int g = radix.length - 1; g >= 0; g--) {
+                    keys[g] = groupColumns.get(g).dictionary()[(int) (remaining % radix[g])];
+                    remaining /= radix[g];
+                }
+                groups.add(new SnapshotGroup(Arrays.asList(keys), slots[base + COUNT], slots[base + PASSED], slots[base + GRADED],
+                    slots[base + GRADE_SUM], slots[base + PASSED_GRADED], slots[base + PASSED_GRADE_SUM], slots[base + TUITION_SUM]));
+            });
+            return groups;
+        }
+    }
+
+    @FunctionalInterface
+    private interface GroupConsumer {
+        void accept(long group, long[] slots, int base);
+    }
+
+    private static final class DenseAccumulator extends Accumulator {
+        private final long[] slots;
+
+        DenseAccumulator(int groups, long[] radix) {
+            super(radix);
+            this.slots = new long[groups * SLOTS];
+        }
+
+        @Override
+        long[] slots(long group) {
+            return slots;
+        }
+
+        @Override
+        int base(long group) {
+            return (int) group * SLOTS;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            long[] theirs = ((DenseAccumulator) other).slots;
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] += theirs[i];
+            }
+        }
+
+        @Override
+        void forEachGroup(GroupConsumer consumer) {
+            for (int group = 0; group < slots.length / SLOTS; group++) {
+                consumer.accept(group, slots, group * SLOTS);
+            }
+        }
+    }
+
+    private static final class SparseAccumulator extends Accumulator {
+        private final Map<Long, long[]> groups = new HashMap<>();
+
+        SparseAccumulator(long[] radix) {
+            super(radix);
+        }
+
+        @Override
+        long[] slots(long group) {
+            return groups.computeIfAbsent(group, key -> new long[SLOTS]);
+        }
+
+        @Override
+        int base(long group) {
+            return 0;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            ((SparseAccumulator) other).groups.forEach((group, theirs) -> {
+                long[] ours = slots(group);
+                for (int i = 0; i < SLOTS; i++) {
+                    ours[i] += theirs[i];
+                }
+            });
+        }
+
+        @Override
+        void forEachGroup(GroupConsumer consumer) {
+            groups.forEach((group, slots) -> consumer.accept(group, slots, 0));
+        }
+    }
+
+    // Collects dimensions first, then fact rows; fact rows must reference loaded dimension keys
+    static final class Builder {
+        private final EnumMap<SnapshotDimension, IntKeyMap> keyOrdinals = new EnumMap<>(SnapshotDimension.class);
+        private final EnumMap<SnapshotDimension, List<Map<String, Integer>>> encoders = new EnumMap<>(SnapshotDimension.class);
+        private final EnumMap<SnapshotDimension, List<int[]>> codes = new EnumMap<>(SnapshotDimension.class);
+        private final EnumMap<SnapshotDimension, Integer> dimensionRows = new EnumMap<>(SnapshotDimension.class);
+        private final EnumMap<SnapshotDimension, int[]> ordinals = new EnumMap<>(SnapshotDimension.class);
+        private int[] gradeHundredths;
+        private long[] tuitionCents;
+        private final BitSet passed = new BitSet();
+        private int rows;
+
+        Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            for (SnapshotDimension dimension : SnapshotDimension.values()) {
+                keyOrdinals.put(dimension, new IntKeyMap());
+                List<Map<String, Integer>> dimensionEncoders = new ArrayList<>();
+                List<int[]> dimensionCodes = new ArrayList<>();
+                for (int i = 0; i < dimension.attributes().size(); i++) {
+                    dimensionEncoders.add(new LinkedHashMap<>());
+                    dimensionCodes.add(new int[16]);
+                }
+                encoders.put(dimension, dimensionEncoders);
+                codes.put(dimension, dimensionCodes);
+                dimensionRows.put(dimension, 0);
+                ordinals.put(dimension, new int[capacity]);
+            }
+            gradeHundredths = new int[capacity];
+            tuitionCents = new long[capacity];
+        }
+
+        // Attribute values in SnapshotDimension.attributes() order
+        Builder dimension(SnapshotDimension dimension, int key, String... values) {
+            int ordinal = dimensionRows.get(dimension);
+            keyOrdinals.get(dimension).put(key, ordinal + 1);
+            List<int[]> dimensionCodes = codes.get(dimension);
+            for (int i = 0; i < values.length; i++) {
+                int[] column = dimensionCodes.get(i);
+                if (ordinal == column.length) {
+                    column = Arrays.copyOf(column, column.length * 2);
+                    dimensionCodes.set(i, column);
+                }
+                Map<String, Integer> encoder = encoders.get(dimension).get(i);
+                column[ordinal] = encoder.computeIfAbsent(values[i], value -> encoder.size());
+            }
+            dimensionRows.put(dimension, ordinal + 1);
+            return this;
+        }
+
+        Builder fact(int dateKey, int studentKey, int courseKey, int departmentKey, int lecturerKey,
+                     BigDecimal finalGrade, BigDecimal tuitionFee, boolean isPassed) {
+            if (rows == gradeHundredths.length) {
+                grow();
+            }
+            ordinals.get(SnapshotDimension.DATE)[rows] = ordinal(SnapshotDimension.DATE, dateKey);
+            ordinals.get(SnapshotDimension.STUDENT)[rows] = ordinal(SnapshotDimension.STUDENT, studentKey);
+            ordinals.get(SnapshotDimension.COURSE)[rows] = ordinal(SnapshotDimension.COURSE, courseKey);
+            ordinals.get(SnapshotDimension.DEPARTMENT)[rows] = ordinal(SnapshotDimension.DEPARTMENT, departmentKey);
+            ordinals.get(SnapshotDimension.LECTURER)[rows] = ordinal(SnapshotDimension.LECTURER, lecturerKey);
+            gradeHundredths[rows] = finalGrade == null ? NULL_GRADE : finalGrade.movePointRight(2).intValueExact();
+            tuitionCents[rows] = tuitionFee == null ? 0 : tuitionFee.movePointRight(2).longValueExact();
+            if (isPassed) {
+                passed.set(rows);
+            }
+            rows++;
+            return this;
+        }
+
+        FactSnapshot build() {
+            EnumMap<SnapshotDimension, DimensionColumns> dimensions = new EnumMap<>(SnapshotDimension.class);
+            EnumMap<SnapshotDimension, int[]> factOrdinals = new EnumMap<>(SnapshotDimension.class);
+            for (SnapshotDimension dimension : SnapshotDimension.values()) {
+                Map<String, int[]> attributeCodes = new HashMap<>();
+                Map<String, String[]> dictionaries = new HashMap<>();
+                for (int i = 0; i < dimension.attributes().size(); i++) {
+                    String attribute = dimension.attributes().get(i);
+                    attributeCodes.put(attribute, Arrays.copyOf(codes.get(dimension).get(i), dimensionRows.get(dimension)));
+                    // LinkedHashMap keeps first-seen order, which is code order
+                    dictionaries.put(attribute, encoders.get(dimension).get(i).keySet().toArray(String[]::new));
+                }
+                dimensions.put(dimension, new DimensionColumns(dimensionRows.get(dimension), attributeCodes, dictionaries));
+                factOrdinals.put(dimension, trim(ordinals.get(dimension)));
+            }
+            long[] tuition = tuitionCents.length == rows ? tuitionCents : Arrays.copyOf(tuitionCents, rows);
+            return new FactSnapshot(rows, factOrdinals, dimensions, trim(gradeHundredths), tuition, passed, OffsetDateTime.now());
+        }
+
+        // The loader sizes the columns from count(*), so normally nothing is copied here
+        private int[] trim(int[] column) {
+            return column.length == rows ? column : Arrays.copyOf(column, rows);
+        }
+
+        private int ordinal(SnapshotDimension dimension, int key) {
+            int ordinal = keyOrdinals.get(dimension).get(key);
+            if (ordinal == IntKeyMap.MISSING) {
+                throw new IllegalStateException("Fact row references unknown " + dimension.keyColumn() + " " + key);
+            }
+            return ordinal - 1;
+        }
+
+        private void grow() {
+            int capacity = gradeHundredths.length * 2;
+            ordinals.replaceAll((dimension, column) -> Arrays.copyOf(column, capacity));
+            gradeHundredths = Arrays.copyOf(gradeHundredths, capacity);
+            tuitionCents = Arrays.copyOf(tuitionCents, capacity);
+        }
+    }
+}
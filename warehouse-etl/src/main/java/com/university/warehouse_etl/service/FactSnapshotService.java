@@ -0,0 +1,117 @@
+package com.university.warehouse_etl.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Keeps the current FactSnapshot. It is (re)loaded at startup and after every ETL run,
+// before the report cache is pre-warmed, and swapped in only once fully built, so
+// queries always see one complete snapshot. Disabled by default: it holds roughly
+// 40 bytes per fact row on the heap.
+@Service
+public class FactSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(FactSnapshotService.class);
+
+    private final JdbcTemplate snapshotJdbcTemplate;
+    private final TransactionTemplate snapshotTransactionTemplate;
+    private final ExecutorService snapshotScanExecutor;
+    private final boolean enabled;
+
+    private volatile FactSnapshot current;
+
+    public FactSnapshotService(@Qualifier("warehouseDataSource") DataSource warehouseDataSource,
+                               @Qualifier("warehouseTransactionManager") JdbcTransactionManager transactionManager,
+                               @Qualifier("snapshotScanExecutor") ExecutorService snapshotScanExecutor,
+                               @Value("${app.reports.snapshot.enabled:false}") boolean enabled,
+                               @Value("${app.reports.snapshot.fetch-size:10000}") int fetchSize) {
+        this.snapshotJdbcTemplate = new JdbcTemplate(warehouseDataSource);
+        this.snapshotJdbcTemplate.setFetchSize(fetchSize);
+        // One consistent view of the dimensions and the facts, streamed through a cursor
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate.setReadOnly(true);
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotScanExecutor = snapshotScanExecutor;
+        this.enabled = enabled;
+    }
+
+    public Optional<FactSnapshot> current() {
+        return Optional.ofNullable(current);
+    }
+
+    public List<SnapshotGroup> query(FactSnapshot snapshot, SnapshotQuery query) {
+        // One segment per core; the executor decides how many run at once
+        return snapshot.query(query, snapshotScanExecutor, Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reloadIfEnabled(false);
+    }
+
+    // Ahead of ReportCacheRefresher, so the pre-warm already reads the new snapshot
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onEtlRunCompleted(EtlRunCompletedEvent event) {
+        reloadIfEnabled(true);
+    }
+
+    private void reloadIfEnabled(boolean afterRun) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // After a run the previous snapshot holds the previous run's numbers, which the caches
+            // and the new data version must not serve; reports fall back to the warehouse instead
+            if (afterRun) {
+                current = null;
+            }
+            log.warn("Could not load the fact snapshot{}: {}", afterRun ? ", reports read the warehouse until the next run" : "", e.getMessage());
+        }
+    }
+
+    public void reload() {
+        long start = System.nanoTime();
+        FactSnapshot loaded = snapshotTransactionTemplate.execute(status -> {
+            Integer factRows = snapshotJdbcTemplate.queryForObject("SELECT count(*) FROM fact_enrollment", Integer.class);
+            FactSnapshot.Builder builder = new FactSnapshot.Builder(factRows == null ? 0 : factRows);
+            for (SnapshotDimension dimension : SnapshotDimension.values()) {
+                int attributes = dimension.attributes().size();
+                snapshotJdbcTemplate.query(dimension.selectSql(), rs -> {
+                    String[] values = new String[attributes];
+                    for (int i = 0; i < attributes; i++) {
+                        values[i] = rs.getString(i + 2);
+                    }
+                    builder.dimension(dimension, rs.getInt(1), values);
+                });
+            }
+            snapshotJdbcTemplate.query(
+                "SELECT date_key, student_key, course_key, department_key, lecturer_key, final_grade, tuition_fee, is_passed FROM fact_enrollment",
+                rs -> {
+                    builder.fact(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5),
+                                 rs.getBigDecimal(6), rs.getBigDecimal(7), rs.getInt(8) == 1);
+                });
+            return builder.build();
+        });
+        current = loaded;
+        log.info("Loaded fact snapshot of {} rows in {} ms.", loaded.rows(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,109 @@
+package com.university.warehouse_etl.service;
+
+import java.nio.ByteBuffer;
+
+// Mergeable approximate distinct count. 2^12 one-byte registers give a standard error of
+// about 1.6% whatever the cardinality; merging two sketches (register-wise max) counts
+// the union, so per-term sketches add up over any range of terms or departments.
+//
+// A 64-bit hash is split into a register index (low 12 bits) and a rank: one plus the
+// leading zeros of the remaining 52 bits. RollupService computes the same split in SQL
+// with hashtextextended(), so the sketches are built without shipping facts to the JVM.
+//
+// Serialized as one precision byte, one encoding byte and then either every register
+// (dense) or (u16 index, u8 rank) for each non-empty one (sparse, while that is smaller).
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    // Leading zeros of the 52 bits left after the index, plus one
+    public static final int MAX_RANK = Long.SIZE - PRECISION + 1;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public void add(long hash) {
+        int index = (int) (hash & (REGISTERS - 1));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash), MAX_RANK - 1) + 1;
+        offer(index, rank);
+    }
+
+    // Register updates as RollupService reads them from the warehouse
+    public void offer(int index, int rank) {
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            offer(i, other.registers[i]);
+        }
+        return this;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        // Linear counting is far more accurate while many registers are still empty
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    // 1.04 / sqrt(m)
+    public static double standardError() {
+        return 1.04 / Math.sqrt(REGISTERS);
+    }
+
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (used * 3 >= REGISTERS) {
+            ByteBuffer dense = ByteBuffer.allocate(2 + REGISTERS).put((byte) PRECISION).put(DENSE).put(registers);
+            return dense.array();
+        }
+        ByteBuffer sparse = ByteBuffer.allocate(2 + used * 3).put((byte) PRECISION).put(SPARSE);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                sparse.putShort((short) i).put(registers[i]);
+            }
+        }
+        return sparse.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int precision = buffer.get();
+        if (precision != PRECISION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog precision " + precision);
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        byte encoding = buffer.get();
+        if (encoding == DENSE) {
+            buffer.get(sketch.registers);
+        } else if (encoding == SPARSE) {
+            while (buffer.hasRemaining()) {
+                sketch.offer(Short.toUnsignedInt(buffer.getShort()), buffer.get());
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown HyperLogLog encoding " + encoding);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,186 @@
+package com.university.warehouse_etl.service;
+
+import java.util.Arrays;
+
+// An int -> int map on primitive arrays, used to turn natural IDs into surrogate keys
+// without boxing. Hashing is open addressing with linear probing at most half full;
+// compact() switches to a directly indexed array when the keys are dense, which is
+// the usual case for SERIAL ids. Not thread-safe while being written; publish a
+// finished map to readers and treat it as read-only from then on.
+public final class IntKeyMap {
+
+    // Surrogate keys come from SERIAL columns and start at 1, so 0 can mean "no key"
+    public static final int MISSING = 0;
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    // Set by compact(): values indexed by (key - denseBase), MISSING where absent
+    private int[] dense;
+    private int denseBase;
+
+    public IntKeyMap() {
+        this(16);
+    }
+
+    public IntKeyMap(int expectedSize) {
+        allocate(tableSizeFor(Math.max(expectedSize, 8) * 2));
+    }
+
+    public int get(int key) {
+        int[] direct = dense;
+        if (direct != null) {
+            long index = (long) key - denseBase;
+            return (index >= 0 && index < direct.length) ? direct[(int) index] : MISSING;
+        }
+        int slot = mix(key) & mask;
+        while (true) {
+            int candidate = keys[slot];
+            if (candidate == key) {
+                return values[slot];
+            }
+            if (candidate == FREE) {
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void put(int key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Unsupported key: " + key);
+        }
+        if (value == MISSING) {
+            throw new IllegalArgumentException("Surrogate key must not be " + MISSING);
+        }
+        if (dense != null) {
+            inflate();
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        insert(key, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        if (dense != null) {
+            for (int i = 0; i < dense.length; i++) {
+                if (dense[i] != MISSING) {
+                    consumer.accept(denseBase + i, dense[i]);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public IntKeyMap copy() {
+        IntKeyMap copy = new IntKeyMap(size);
+        forEach(copy::put);
+        return copy;
+    }
+
+    // Replaces the hash table with a plain array when the key range is at most twice the
+    // entry count, so a lookup becomes one bounds check and one array read.
+    public IntKeyMap compact() {
+        if (dense != null || size == 0) {
+            return this;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int key : keys) {
+            if (key != FREE) {
+                min = Math.min(min, key);
+                max = Math.max(max, key);
+            }
+        }
+        long span = (long) max - min + 1;
+        if (span > 2L * size + 64) {
+            return this;
+        }
+        int[] direct = new int[(int) span];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                direct[keys[i] - min] = values[i];
+            }
+        }
+        denseBase = min;
+        dense = direct;
+        keys = null;
+        values = null;
+        return this;
+    }
+
+    private void inflate() {
+        int[] direct = dense;
+        int base = denseBase;
+        dense = null;
+        size = 0;
+        allocate(tableSizeFor(Math.max(direct.length, 8) * 2));
+        for (int i = 0; i < direct.length; i++) {
+            if (direct[i] != MISSING) {
+                insert(base + i, direct[i]);
+            }
+        }
+    }
+
+    private void insert(int key, int value) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        size = 0;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+    }
+
+    // Sequential ids would cluster badly under linear probing without a finalizer
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,191 @@
+package com.university.warehouse_etl.service;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Creates the range partitions a load is about to write into. Monthly partitions are
+// bounded at UTC midnight so they line up with the UTC date_key stored next to them.
+//
+// Academic-year partitions (on date_key) are rebuilt rather than written into: the year
+// is loaded into a standalone <partition>_next table, given the parent's keys and
+// indexes plus a CHECK matching its bounds, and then exchanged for the live partition
+// with DETACH / ATTACH. The CHECK lets ATTACH skip its validation scan and the matching
+// indexes are adopted instead of rebuilt, so the exchange only touches the catalog.
+@Component
+public class PartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionManager.class);
+
+    private static final String BOUNDS = "_bounds";
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final TransactionTemplate warehouseTransactionTemplate;
+
+    public PartitionManager(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                            @Qualifier("warehouseTransactionTemplate") TransactionTemplate warehouseTransactionTemplate) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.warehouseTransactionTemplate = warehouseTransactionTemplate;
+    }
+
+    // IF NOT EXISTS makes this a no-op for months that are already there
+    public void ensureMonthly(String table, Collection<YearMonth> months) {
+        for (YearMonth month : months) {
+            warehouseJdbcTemplate.execute(monthlyPartitionDdl(table, month));
+        }
+        log.debug("Ensured {} monthly partitions of {}.", months.size(), table);
+    }
+
+    // Creates an empty, unindexed copy of the parent for one academic year and returns its name.
+    // With resume the copy an earlier attempt left behind is kept as it is.
+    public String prepareAcademicYear(String table, int academicYear, boolean resume) {
+        String rebuilt = ShadowTables.shadowName(academicYearPartitionName(table, academicYear));
+        if (!resume) {
+            warehouseJdbcTemplate.execute("DROP TABLE IF EXISTS " + rebuilt);
+        }
+        warehouseJdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + rebuilt + " (LIKE " + table + " INCLUDING DEFAULTS)");
+        return rebuilt;
+    }
+
+    public boolean hasRebuiltAcademicYear(String table, int academicYear) {
+        return Boolean.TRUE.equals(warehouseJdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+            ShadowTables.shadowName(academicYearPartitionName(table, academicYear))));
+    }
+
+    // Once the rows are in: the bounds CHECK, the parent's keys and indexes, and statistics.
+    // Whatever an interrupted earlier attempt already added is dropped first.
+    public void finishAcademicYear(String table, int academicYear) {
+        String partition = academicYearPartitionName(table, academicYear);
+        String rebuilt = ShadowTables.shadowName(partition);
+        long start = System.nanoTime();
+        List<Map<String, Object>> keys = keyConstraints(table);
+        List<Map<String, Object>> indexes = plainIndexes(table);
+        warehouseJdbcTemplate.execute("ALTER TABLE " + rebuilt + " DROP CONSTRAINT IF EXISTS " + ShadowTables.shadowName(partition + BOUNDS));
+        for (Map<String, Object> constraint : keys) {
+            warehouseJdbcTemplate.execute("ALTER TABLE " + rebuilt + " DROP CONSTRAINT IF EXISTS " + ShadowTables.shadowName(partitionObjectName(partition, (String) constraint.get("name"))));
+        }
+        for (Map<String, Object> index : indexes) {
+            warehouseJdbcTemplate.execute("DROP INDEX IF EXISTS " + ShadowTables.shadowName(partitionObjectName(partition, (String) index.get("name"))));
+        }
+        warehouseJdbcTemplate.execute("ALTER TABLE " + rebuilt + " ADD CONSTRAINT " + ShadowTables.shadowName(partition + BOUNDS) +
+            " CHECK (date_key >= " + academicYearFrom(academicYear) + " AND date_key < " + academicYearFrom(academicYear + 1) + ")");
+        for (Map<String, Object> constraint : keys) {
+            warehouseJdbcTemplate.execute("ALTER TABLE " + rebuilt + " ADD CONSTRAINT " +
+                ShadowTables.shadowName(partitionObjectName(partition, (String) constraint.get("name"))) + " " + constraint.get("definition"));
+        }
+        for (Map<String, Object> index : indexes) {
+            // pg_get_indexdef gives "CREATE INDEX name ON ONLY schema.table USING ..."
+            String definition = (String) index.get("definition");
+            String create = definition.startsWith("CREATE UNIQUE") ? "CREATE UNIQUE INDEX " : "CREATE INDEX ";
+            warehouseJdbcTemplate.execute(create + ShadowTables.shadowName(partitionObjectName(partition, (String) index.get("name"))) +
+                " ON " + rebuilt + definition.substring(definition.indexOf(" USING ")));
+        }
+        warehouseJdbcTemplate.execute("ANALYZE " + rebuilt);
+        log.info("Built keys and indexes on {} in {} ms.", rebuilt, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Swaps the rebuilt years in for the live ones in one transaction (joining the caller's,
+    // if any). With dropOthers every partition that was not rebuilt is dropped as well, for
+    // loads that replace the whole table.
+    public void exchangeAcademicYears(String table, Collection<Integer> academicYears, boolean dropOthers) {
+        long start = System.nanoTime();
+        warehouseTransactionTemplate.executeWithoutResult(status -> {
+            List<String> attached = attachedPartitions(table);
+            List<String> keyNames = keyConstraints(table).stream().map(constraint -> (String) constraint.get("name")).toList();
+            List<String> indexNames = plainIndexes(table).stream().map(index -> (String) index.get("name")).toList();
+            if (dropOthers) {
+                List<String> rebuilt = academicYears.stream().map(year -> academicYearPartitionName(table, year)).toList();
+                for (String partition : attached) {
+                    if (!rebuilt.contains(partition)) {
+                        warehouseJdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+                        warehouseJdbcTemplate.execute("DROP TABLE " + partition);
+                    }
+                }
+            }
+            for (int academicYear : academicYears) {
+                String partition = academicYearPartitionName(table, academicYear);
+                if (attached.contains(partition)) {
+                    warehouseJdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+                }
+                warehouseJdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                warehouseJdbcTemplate.execute("ALTER TABLE " + ShadowTables.shadowName(partition) + " RENAME TO " + partition);
+                for (String name : keyNames) {
+                    String finalName = partitionObjectName(partition, name);
+                    warehouseJdbcTemplate.execute("ALTER TABLE " + partition + " RENAME CONSTRAINT " + ShadowTables.shadowName(finalName) + " TO " + finalName);
+                }
+                for (String name : indexNames) {
+                    String finalName = partitionObjectName(partition, name);
+                    warehouseJdbcTemplate.execute("ALTER INDEX " + ShadowTables.shadowName(finalName) + " RENAME TO " + finalName);
+                }
+                warehouseJdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + partition + " " + academicYearBounds(academicYear));
+                // Only there to spare ATTACH its scan; the partition bound enforces the same range
+                warehouseJdbcTemplate.execute("ALTER TABLE " + partition + " DROP CONSTRAINT " + ShadowTables.shadowName(partition + BOUNDS));
+            }
+        });
+        log.info("Exchanged {} academic-year partitions of {} in {} ms.", academicYears.size(), table, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Drops whatever rebuilt years a failed run left behind; the live partitions are untouched
+    public void discardAcademicYears(String table, Collection<Integer> academicYears) {
+        for (int academicYear : academicYears) {
+            warehouseJdbcTemplate.execute("DROP TABLE IF EXISTS " + ShadowTables.shadowName(academicYearPartitionName(table, academicYear)));
+        }
+    }
+
+    private List<String> attachedPartitions(String table) {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass", String.class, table);
+    }
+
+    private List<Map<String, Object>> keyConstraints(String table) {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT conname AS name, pg_get_constraintdef(oid) AS definition FROM pg_constraint " +
+            "WHERE conrelid = ?::regclass AND contype IN ('p', 'u') ORDER BY contype, conname", table);
+    }
+
+    // Indexes that do not back a constraint
+    private List<Map<String, Object>> plainIndexes(String table) {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT c.relname AS name, pg_get_indexdef(i.indexrelid) AS definition FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE i.indrelid = ?::regclass AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = i.indexrelid) ORDER BY c.relname", table);
+    }
+
+    static String monthlyPartitionDdl(String table, YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + monthlyPartitionName(table, month) + " PARTITION OF " + table +
+               " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00+00')";
+    }
+
+    static String monthlyPartitionName(String table, YearMonth month) {
+        return String.format("%s_y%04dm%02d", table, month.getYear(), month.getMonthValue());
+    }
+
+    // Academic year 2024 (2024/2025) holds date keys [20240901, 20250901)
+    static int academicYearFrom(int academicYear) {
+        return EtlTransforms.dateKey(academicYear, 9, 1);
+    }
+
+    static String academicYearBounds(int academicYear) {
+        return "FOR VALUES FROM (" + academicYearFrom(academicYear) + ") TO (" + academicYearFrom(academicYear + 1) + ")";
+    }
+
+    static String academicYearPartitionName(String table, int academicYear) {
+        return table + "_ay" + academicYear;
+    }
+
+    // A partition's copy of one of the parent's constraints or indexes, e.g.
+    // fact_enrollment_ay2024 + idx_fact_student_key; kept within the identifier limit
+    // with room for the _next suffix of the rebuilt copy
+    static String partitionObjectName(String partition, String parentObject) {
+        String name = partition + "_" + parentObject;
+        int limit = 63 - ShadowTables.SUFFIX.length();
+        return name.length() > limit ? name.substring(0, limit) : name;
+    }
+}
@@ -0,0 +1,140 @@
+package com.university.warehouse_etl.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Compiles a PivotRequest into one parameterized SQL statement over the star schema.
+// Only whitelisted measures and SnapshotDimension attributes are accepted, only the
+// dimensions the request touches are joined, and filter values are bound as one array
+// per attribute, so the SQL text depends on the query's shape and never on its values.
+// Compiled plans are cached per shape; because the text is stable, the PostgreSQL
+// driver also reuses its server-side prepared statement for every execution.
+@Component
+public class PivotPlanner {
+
+    static final int MAX_GROUP_BY = 4;
+    static final int MAX_FILTER_VALUES = 1000;
+
+    // Measure name -> aggregate over fact_enrollment f
+    private static final Map<String, String> MEASURES = new LinkedHashMap<>();
+
+    static {
+        MEASURES.put("count", "SUM(f.enrollment_count)");
+        MEASURES.put("passed", "SUM(f.is_passed)");
+        MEASURES.put("graded", "COUNT(f.final_grade)");
+        MEASURES.put("pass_rate", "CAST(AVG(f.is_passed) AS NUMERIC(5,4))");
+        MEASURES.put("average_grade", "CAST(AVG(f.final_grade) AS NUMERIC(10,2))");
+        MEASURES.put("tuition", "CAST(SUM(f.tuition_fee) AS NUMERIC(15,2))");
+        MEASURES.put("distinct_students", "COUNT(DISTINCT f.student_key)");
+    }
+
+    // The filter attributes are bound in this order, followed by the row limit
+    public record CompiledPivot(String sql, List<String> filterAttributes) {}
+
+    private record Shape(List<String> measures, List<String> groupBy, Set<String> filterAttributes) {}
+
+    private final Cache<Shape, CompiledPivot> plans = Caffeine.newBuilder().maximumSize(1_000).build();
+    private final int maxRows;
+
+    public PivotPlanner(@Value("${app.reports.query.max-rows:10000}") int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    public int maxRows() {
+        return maxRows;
+    }
+
+    public CompiledPivot compile(PivotRequest request) {
+        validate(request);
+        // PivotRequest keeps filters sorted, so the key set is in a stable order
+        Shape shape = new Shape(request.measures(), request.groupBy(), new LinkedHashSet<>(request.filters().keySet()));
+        return plans.get(shape, PivotPlanner::plan);
+    }
+
+    private static void validate(PivotRequest request) {
+        if (request.measures().isEmpty()) {
+            throw new IllegalArgumentException("At least one measure is required; available: " + MEASURES.keySet());
+        }
+        for (String measure : request.measures()) {
+            if (!MEASURES.containsKey(measure)) {
+                throw new IllegalArgumentException("Unknown measure: " + measure + "; available: " + MEASURES.keySet());
+            }
+        }
+        if (new LinkedHashSet<>(request.measures()).size() != request.measures().size()
+                || new LinkedHashSet<>(request.groupBy()).size() != request.groupBy().size()) {
+            throw new IllegalArgumentException("Measures and group-by attributes must not repeat");
+        }
+        if (request.groupBy().size() > MAX_GROUP_BY) {
+            throw new IllegalArgumentException("At most " + MAX_GROUP_BY + " group-by attributes are allowed");
+        }
+        request.groupBy().forEach(SnapshotDimension::ofAttribute);
+        request.filters().forEach((attribute, values) -> {
+            SnapshotDimension.ofAttribute(attribute);
+            if (values.isEmpty() || values.size() > MAX_FILTER_VALUES) {
+                throw new IllegalArgumentException("Filter on " + attribute + " needs between 1 and " + MAX_FILTER_VALUES + " values");
+            }
+        });
+    }
+
+    private static CompiledPivot plan(Shape shape) {
+        List<String> select = new ArrayList<>();
+        for (String attribute : shape.groupBy()) {
+            select.add(reference(attribute) + " AS \"" + attribute + "\"");
+        }
+        for (String measure : shape.measures()) {
+            select.add(MEASURES.get(measure) + " AS \"" + measure + "\"");
+        }
+
+        // Join pruning: a dimension is joined only when an attribute of it is used
+        Set<SnapshotDimension> joined = new LinkedHashSet<>();
+        shape.groupBy().forEach(attribute -> joined.add(SnapshotDimension.ofAttribute(attribute)));
+        shape.filterAttributes().forEach(attribute -> joined.add(SnapshotDimension.ofAttribute(attribute)));
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", select)).append(" FROM fact_enrollment f");
+        for (SnapshotDimension dimension : joined) {
+            String alias = alias(dimension);
+            sql.append(" JOIN ").append(dimension.table()).append(' ').append(alias)
+               .append(" ON f.").append(dimension.keyColumn()).append(" = ").append(alias).append('.').append(dimension.keyColumn());
+        }
+        List<String> conditions = new ArrayList<>();
+        for (String attribute : shape.filterAttributes()) {
+            // Values arrive as text; the dimensions are small, so the cast costs nothing
+            conditions.add("CAST(" + reference(attribute) + " AS text) = ANY(?)");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (!shape.groupBy().isEmpty()) {
+            String ordinals = ordinals(shape.groupBy().size());
+            sql.append(" GROUP BY ").append(ordinals).append(" ORDER BY ").append(ordinals);
+        }
+        sql.append(" LIMIT ?");
+        return new CompiledPivot(sql.toString(), List.copyOf(shape.filterAttributes()));
+    }
+
+    private static String reference(String attribute) {
+        return alias(SnapshotDimension.ofAttribute(attribute)) + "." + SnapshotDimension.column(attribute);
+    }
+
+    private static String alias(SnapshotDimension dimension) {
+        return "d_" + dimension.prefix();
+    }
+
+    private static String ordinals(int count) {
+        List<String> ordinals = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            ordinals.add(Integer.toString(i));
+        }
+        return String.join(", ", ordinals);
+    }
+}
@@ -0,0 +1,34 @@
+package com.university.warehouse_etl.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+// Body of POST /api/reports/query: which fact_enrollment measures to compute, grouped by
+// which dimension attributes, for rows whose attributes match the filter values, e.g.
+//   {"measures": ["count", "pass_rate"],
+//    "groupBy": ["student.nationality", "date.academic_year"],
+//    "filters": {"course.level": ["Undergraduate"]}}
+// Records compare by value, so a normalized request doubles as its result cache key.
+public record PivotRequest(List<String> measures, List<String> groupBy, Map<String, List<String>> filters) {
+
+    public PivotRequest {
+        measures = measures == null ? List.of() : List.copyOf(measures);
+        groupBy = groupBy == null ? List.of() : List.copyOf(groupBy);
+        // Sorted attributes and values, so equivalent requests share a cache entry and a plan
+        Map<String, List<String>> sorted = new TreeMap<>();
+        if (filters != null) {
+            filters.forEach((attribute, values) -> sorted.put(attribute, values == null ? List.of() : values.stream().filter(Objects::nonNull).sorted().distinct().toList()));
+        }
+        filters = Collections.unmodifiableMap(sorted);
+    }
+
+    // The same request with the attribute's filter replaced by exactly these values
+    public PivotRequest withFilter(String attribute, List<String> values) {
+        Map<String, List<String>> scoped = new TreeMap<>(filters);
+        scoped.put(attribute, values);
+        return new PivotRequest(measures, groupBy, scoped);
+    }
+}
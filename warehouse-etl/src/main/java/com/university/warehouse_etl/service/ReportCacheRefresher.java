@@ -0,0 +1,61 @@
+package com.university.warehouse_etl.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Report data only changes when the ETL loads new data, so cached report results stay
+// valid until a run completes. Then the cache is cleared and, if enabled, refilled
+// straight away so the first dashboard of the day does not pay for the queries.
+@Component
+public class ReportCacheRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportCacheRefresher.class);
+
+    private final CacheManager cacheManager;
+    private final ReportService reportService;
+    private final boolean prewarm;
+
+    public ReportCacheRefresher(CacheManager cacheManager, ReportService reportService,
+                                @Value("${app.reports.cache.prewarm:true}") boolean prewarm) {
+        this.cacheManager = cacheManager;
+        this.reportService = reportService;
+        this.prewarm = prewarm;
+    }
+
+    @EventListener
+    public void onEtlRunCompleted(EtlRunCompletedEvent event) {
+        Cache cache = cacheManager.getCache(ReportService.CACHE_NAME);
+        if (cache != null) {
+            cache.clear();
+            log.info("Cleared report cache after {} ETL run.", event.mode());
+        }
+        if (prewarm) {
+            prewarm();
+        }
+    }
+
+    private void prewarm() {
+        long start = System.nanoTime();
+        try {
+            reportService.getDepartmentPerformance();
+            reportService.getEnrollmentTrend();
+            reportService.getStudentDiversity();
+            reportService.getTuitionRevenue();
+            reportService.getYoyEnrollment();
+            for (String department : reportService.getDepartmentNames()) {
+                reportService.getHodCoursePerformance(department);
+                reportService.getTopStudents(department);
+                reportService.getLecturerWorkload(department);
+            }
+            log.info("Pre-warmed report cache in {} ms.", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // A cold cache only costs latency; requests will fill it on demand
+            log.warn("Could not pre-warm report cache: {}", e.getMessage());
+        }
+    }
+}
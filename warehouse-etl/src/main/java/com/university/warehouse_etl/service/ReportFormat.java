@@ -0,0 +1,21 @@
+package com.university.warehouse_etl.service;
+
+// Wire formats for streamed report exports
+public enum ReportFormat {
+    // One JSON object per line, so clients can process rows as they arrive
+    NDJSON("application/x-ndjson"),
+    // A single JSON array, written element by element
+    JSON("application/json"),
+    // Header row plus RFC 4180 quoted values
+    CSV("text/csv");
+
+    private final String contentType;
+
+    ReportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,69 @@
+package com.university.warehouse_etl.service;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+// With app.datasource.report.url set, reports read a streaming replica of the warehouse,
+// which sees a run's commits only once it has replayed them. The scheduler waits for that
+// before it clears the report caches and publishes the new data version, so neither a
+// cached report nor an ETag pairs the new version with the previous run's rows.
+@Component
+public class ReportReplicaSync {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportReplicaSync.class);
+    private static final long POLL_MILLIS = 1000;
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final JdbcTemplate reportJdbcTemplate;
+    private final boolean replica;
+    private final Duration timeout;
+
+    public ReportReplicaSync(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                             @Qualifier("reportJdbcTemplate") JdbcTemplate reportJdbcTemplate,
+                             @Value("${app.datasource.report.url:}") String replicaUrl,
+                             @Value("${app.reports.replica.catch-up-timeout:10m}") Duration timeout) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.reportJdbcTemplate = reportJdbcTemplate;
+        this.replica = StringUtils.hasText(replicaUrl);
+        this.timeout = timeout;
+    }
+
+    // True once the report pool sees everything committed to the warehouse so far; false if
+    // the replica did not get there within the timeout or could not be asked
+    public boolean awaitCaughtUp() {
+        if (!replica) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            String lsn = warehouseJdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+            while (true) {
+                // NULL when the server is not replaying WAL, i.e. the url points at the warehouse itself
+                Boolean caughtUp = reportJdbcTemplate.queryForObject(
+                    "SELECT COALESCE(pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn), true)", Boolean.class, lsn);
+                if (Boolean.TRUE.equals(caughtUp)) {
+                    log.info("Report replica replayed the warehouse up to {} after {} ms.", lsn, (System.nanoTime() - start) / 1_000_000);
+                    return true;
+                }
+                if (System.nanoTime() - start > timeout.toNanos()) {
+                    return false;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not compare the report replica with the warehouse: {}", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
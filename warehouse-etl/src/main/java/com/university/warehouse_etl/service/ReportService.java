@@ -0,0 +1,492 @@
+package com.university.warehouse_etl.service;
+
+import java.math.BigDecimal;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// The warehouse queries behind /api/reports. Results are cached per report (and per
+// department for the HOD reports) until the next ETL run clears them, see ReportCacheRefresher.
+// Reports whose grain allows it read the rollup tables built by RollupService instead
+// of fact_enrollment; top students and lecturer workload always need the fact rows.
+// When the in-memory FactSnapshot is loaded, every report is answered from it instead.
+// Each query is timed as report.query, tagged with its source (cache hits never reach it).
+@Service
+public class ReportService {
+
+    public static final String CACHE_NAME = "reports";
+
+    // Shared by the cached report and its streamed export
+    private static final String LECTURER_WORKLOAD_SQL = "SELECT l.full_name, COUNT(f.enrollment_fact_id) as student_count FROM fact_enrollment f JOIN dim_lecturer l ON f.lecturer_key = l.lecturer_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? GROUP BY l.full_name ORDER BY student_count DESC";
+
+    // --- DTO Records for our reports ---
+    public record DepartmentPerformanceDTO(String departmentName, Long studentsPassed, BigDecimal averageGrade) {}
+    public record EnrollmentTrendDTO(String yearMonth, Long enrollmentCount) {}
+    public record DiversityDTO(String category, Long count) {}
+    public record TuitionRevenueDTO(String departmentName, BigDecimal totalTuition) {}
+    public record TopStudentDTO(String studentName, BigDecimal grade) {}
+    // studentCount counts enrollments; distinctStudents is approximate when read from the sketches
+    public record LecturerWorkloadDTO(String lecturerName, Long studentCount, Long distinctStudents) {}
+    public record YoYEnrollmentDTO(String monthName, long currentYearCount, long previousYearCount) {}
+    public record RevenueDTO(String departmentName, BigDecimal billed, BigDecimal collected) {}
+    public record MonthlyRevenueDTO(String yearMonth, BigDecimal billed, BigDecimal collected) {}
+    public record DepartmentStudentsDTO(String departmentName, long students) {}
+    // standardError is the sketches' relative error, 0 when the counts are exact
+    public record DistinctStudentsDTO(long students, List<DepartmentStudentsDTO> departments, double standardError) {}
+
+    private final JdbcTemplate reportJdbcTemplate;
+    private final RollupService rollupService;
+    private final MeterRegistry meterRegistry;
+    private final ReportStreamer reportStreamer;
+    private final FactSnapshotService factSnapshots;
+    private final PivotPlanner pivotPlanner;
+
+    public ReportService(@Qualifier("reportJdbcTemplate") JdbcTemplate reportJdbcTemplate,
+                         RollupService rollupService,
+                         MeterRegistry meterRegistry,
+                         ReportStreamer reportStreamer,
+                         FactSnapshotService factSnapshots,
+                         PivotPlanner pivotPlanner) {
+        this.reportJdbcTemplate = reportJdbcTemplate;
+        this.rollupService = rollupService;
+        this.meterRegistry = meterRegistry;
+        this.reportStreamer = reportStreamer;
+        this.factSnapshots = factSnapshots;
+        this.pivotPlanner = pivotPlanner;
+    }
+
+    // --- VC & ADMIN Reports ---
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'department-performance'")
+    public List<DepartmentPerformanceDTO> getDepartmentPerformance() {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("department-performance", "snapshot", () -> departmentPerformance(snapshot.get()));
+        }
+        String sql = rollupService.isAvailable()
+            ? "SELECT d.department_name, SUM(a.passed_count)::bigint AS number_of_students_passed, CAST(SUM(a.passed_grade_sum) / NULLIF(SUM(a.passed_grade_count), 0) AS NUMERIC(10,2)) AS average_grade FROM agg_enrollment_department_month a JOIN dim_department d ON a.department_key = d.department_key GROUP BY d.department_name HAVING SUM(a.passed_count) > 0 ORDER BY d.department_name"
+            : "SELECT d.department_name, SUM(f.is_passed) AS number_of_students_passed, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) AS average_grade FROM fact_enrollment f JOIN dim_department d ON f.department_key = d.department_key WHERE f.is_passed = 1 GROUP BY d.department_name ORDER BY d.department_name";
+        return timed("department-performance", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> new DepartmentPerformanceDTO(rs.getString("department_name"), rs.getLong("number_of_students_passed"), rs.getBigDecimal("average_grade"))));
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'enrollment-trend'")
+    public List<EnrollmentTrendDTO> getEnrollmentTrend() {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("enrollment-trend", "snapshot", () -> enrollmentTrend(snapshot.get()));
+        }
+        String sql = rollupService.isAvailable()
+            ? "SELECT a.year || '-' || a.month_name AS year_month, SUM(a.enrollment_count) AS enrollment_count FROM agg_enrollment_department_month a GROUP BY a.year, a.month, a.month_name ORDER BY a.year, a.month"
+            // Every year is needed here, so nothing can be pruned; aggregating on date_key first lets
+            // each partition collapse to a few rows before the join (enrollments are dated on the 1st)
+            : "SELECT d.year || '-' || d.month_name AS year_month, m.enrollment_count FROM " +
+              "(SELECT f.date_key / 100 AS month_key, SUM(f.enrollment_count) AS enrollment_count FROM fact_enrollment f GROUP BY 1) m " +
+              "JOIN dim_date d ON d.date_key = m.month_key * 100 + 1 ORDER BY m.month_key";
+        return timed("enrollment-trend", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> new EnrollmentTrendDTO(rs.getString("year_month"), rs.getLong("enrollment_count"))));
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'student-diversity'")
+    public List<DiversityDTO> getStudentDiversity() {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("student-diversity", "snapshot", () -> studentDiversity(snapshot.get()));
+        }
+        String sql = "SELECT nationality AS category, COUNT(*) as count FROM dim_student GROUP BY nationality ORDER BY count DESC";
+        return timed("student-diversity", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> new DiversityDTO(rs.getString("category"), rs.getLong("count"))));
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'tuition-revenue'")
+    public List<TuitionRevenueDTO> getTuitionRevenue() {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("tuition-revenue", "snapshot", () -> tuitionRevenue(snapshot.get()));
+        }
+        String source = rollupService.isAvailable()
+            ? "SELECT d.department_name, CAST(SUM(a.tuition_sum) AS NUMERIC(15,2)) as total_tuition FROM agg_enrollment_department_month a JOIN dim_department d ON a.department_key = d.department_key "
+            : "SELECT d.department_name, CAST(SUM(f.tuition_fee) AS NUMERIC(15,2)) as total_tuition FROM fact_enrollment f JOIN dim_department d ON f.department_key = d.department_key ";
+        String sql = source + "GROUP BY d.department_name ORDER BY total_tuition DESC";
+        return timed("tuition-revenue", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> new TuitionRevenueDTO(rs.getString("department_name"), rs.getBigDecimal("total_tuition"))));
+    }
+
+    // Each month of the latest year is compared with the closest earlier year that has that
+    // month (LAG over the years present), whether the snapshot, the rollups or the fact table answers
+    @Cacheable(cacheNames = CACHE_NAME, key = "'yoy-enrollment'")
+    public List<YoYEnrollmentDTO> getYoyEnrollment() {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("yoy-enrollment", "snapshot", () -> yoyEnrollment(snapshot.get()));
+        }
+        // advanced query uses  Common Table Expression (CTE) and the LAG() window function
+        // The earlier year can be any year, so the fact table is read whole rather than pruned
+        boolean rollups = rollupService.isAvailable();
+        String monthly = rollups
+            ? "  SELECT a.year, a.month, a.month_name, SUM(a.enrollment_count) as total_enrollments " +
+              "  FROM agg_enrollment_department_month a " +
+              "  GROUP BY a.year, a.month, a.month_name "
+            : "  SELECT d.year, d.month, d.month_name, SUM(f.enrollment_count) as total_enrollments " +
+              "  FROM fact_enrollment f " +
+              "  JOIN dim_date d ON f.date_key = d.date_key " +
+              "  GROUP BY d.year, d.month, d.month_name ";
+        String sql = "WITH monthly_enrollments AS ( " +
+                     monthly +
+                     "), " +
+                     "yoy_comparison AS ( " +
+                     "  SELECT year, month, month_name, total_enrollments, " +
+                     "  LAG(total_enrollments, 1) OVER (PARTITION BY month_name ORDER BY year) as previous_year_enrollments " +
+                     "  FROM monthly_enrollments " +
+                     ") " +
+                     "SELECT month_name, total_enrollments as current_year_count, " +
+                     "COALESCE(previous_year_enrollments, 0) as previous_year_count " +
+                     "FROM yoy_comparison " +
+                     
+                     "WHERE year = (SELECT MAX(year) FROM monthly_enrollments) " +
+                     "ORDER BY month";
+
+        return timed("yoy-enrollment", () -> reportJdbcTemplate.query(sql, (rs, rowNum) ->
+            new YoYEnrollmentDTO(
+                rs.getString("month_name"),
+                rs.getLong("current_year_count"),
+                rs.getLong("previous_year_count")
+            )));
+    }
+
+    // --- Collected vs billed revenue over [from, to) ---
+    // Billed is tuition on enrollments dated in the period, collected is cash from fact_payment.
+    // Both sides are bounded on their partition keys (date_key for fact_enrollment, payment_date
+    // as UTC instants for fact_payment) so only the partitions the period covers are scanned.
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'revenue/collected-vs-billed:' + #from + ':' + #to")
+    public List<RevenueDTO> getCollectedVsBilled(LocalDate from, LocalDate to) {
+        String sql = "WITH billed AS ( " +
+                     "  SELECT f.department_key, SUM(f.tuition_fee) AS billed FROM fact_enrollment f " +
+                     "  WHERE f.date_key >= ? AND f.date_key < ? GROUP BY f.department_key " +
+                     "), collected AS ( " +
+                     "  SELECT p.department_key, SUM(p.amount_paid) AS collected FROM fact_payment p " +
+                     "  WHERE p.payment_date >= ? AND p.payment_date < ? GROUP BY p.department_key " +
+                     ") " +
+                     "SELECT COALESCE(d.department_name, 'Unassigned') AS department_name, " +
+                     "CAST(COALESCE(b.billed, 0) AS NUMERIC(15,2)) AS billed, CAST(COALESCE(c.collected, 0) AS NUMERIC(15,2)) AS collected " +
+                     "FROM billed b FULL JOIN collected c ON b.department_key = c.department_key " +
+                     "LEFT JOIN dim_department d ON d.department_key = COALESCE(b.department_key, c.department_key) " +
+                     "ORDER BY department_name";
+        return timed("revenue/collected-vs-billed", () -> reportJdbcTemplate.query(sql,
+            (rs, rowNum) -> new RevenueDTO(rs.getString("department_name"), rs.getBigDecimal("billed"), rs.getBigDecimal("collected")),
+            revenuePeriodArgs(from, to)));
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'revenue/monthly:' + #from + ':' + #to")
+    public List<MonthlyRevenueDTO> getMonthlyRevenue(LocalDate from, LocalDate to) {
+        // date_key / 100 is yyyymm on both sides
+        String sql = "WITH billed AS ( " +
+                     "  SELECT f.date_key / 100 AS year_month, SUM(f.tuition_fee) AS billed FROM fact_enrollment f " +
+                     "  WHERE f.date_key >= ? AND f.date_key < ? GROUP BY 1 " +
+                     "), collected AS ( " +
+                     "  SELECT p.date_key / 100 AS year_month, SUM(p.amount_paid) AS collected FROM fact_payment p " +
+                     "  WHERE p.payment_date >= ? AND p.payment_date < ? GROUP BY 1 " +
+                     ") " +
+                     "SELECT COALESCE(b.year_month, c.year_month) AS year_month, " +
+                     "CAST(COALESCE(b.billed, 0) AS NUMERIC(15,2)) AS billed, CAST(COALESCE(c.collected, 0) AS NUMERIC(15,2)) AS collected " +
+                     "FROM billed b FULL JOIN collected c ON b.year_month = c.year_month " +
+                     "ORDER BY 1";
+        return timed("revenue/monthly", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> {
+            int yearMonth = rs.getInt("year_month");
+            return new MonthlyRevenueDTO(String.format("%04d-%02d", yearMonth / 100, yearMonth % 100), rs.getBigDecimal("billed"), rs.getBigDecimal("collected"));
+        }, revenuePeriodArgs(from, to)));
+    }
+
+    // Date keys for the billed side, then UTC midnight instants for the payment partitions
+    private static Object[] revenuePeriodArgs(LocalDate from, LocalDate to) {
+        return new Object[]{ EtlTransforms.dateKey(from), EtlTransforms.dateKey(to),
+                             from.atStartOfDay().atOffset(ZoneOffset.UTC), to.atStartOfDay().atOffset(ZoneOffset.UTC) };
+    }
+
+    // --- HOD-Specific Reports (scoped to one department) ---
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'hod/course-performance:' + #department")
+    public List<Map<String, Object>> getHodCoursePerformance(String department) {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("hod/course-performance", "snapshot", () -> hodCoursePerformance(snapshot.get(), department));
+        }
+        return timed("hod/course-performance", () -> reportJdbcTemplate.queryForList(hodCoursePerformanceSql(), department));
+    }
+
+    private String hodCoursePerformanceSql() {
+        return rollupService.isAvailable()
+            ? "SELECT c.course_title, SUM(a.graded_passed_count)::bigint as passed_count, (SUM(a.graded_count) - SUM(a.graded_passed_count))::bigint as failed_count, CAST(SUM(a.grade_sum) / SUM(a.graded_count) AS NUMERIC(10,2)) as average_grade FROM agg_enrollment_course_term a JOIN dim_course c ON a.course_key = c.course_key JOIN dim_department d ON a.department_key = d.department_key WHERE d.department_name = ? GROUP BY c.course_title ORDER BY c.course_title"
+            : "SELECT c.course_title, SUM(f.is_passed) as passed_count, (COUNT(f.enrollment_fact_id) - SUM(f.is_passed)) as failed_count, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) as average_grade FROM fact_enrollment f JOIN dim_course c ON f.course_key = c.course_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? AND f.final_grade IS NOT NULL GROUP BY c.course_title ORDER BY c.course_title";
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'hod/top-students:' + #department")
+    public List<TopStudentDTO> getTopStudents(String department) {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("hod/top-students", "snapshot", () -> topStudents(snapshot.get(), department));
+        }
+        String sql = "SELECT s.full_name, CAST(AVG(f.final_grade) AS NUMERIC(10,2)) as grade FROM fact_enrollment f JOIN dim_student s ON f.student_key = s.student_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? AND f.final_grade IS NOT NULL GROUP BY s.full_name ORDER BY grade DESC LIMIT 5";
+        return timed("hod/top-students", () -> reportJdbcTemplate.query(sql, (rs, rowNum) -> new TopStudentDTO(rs.getString("full_name"), rs.getBigDecimal("grade")), department));
+    }
+
+    @Cacheable(cacheNames = CACHE_NAME, key = "'hod/lecturer-workload:' + #department")
+    public List<LecturerWorkloadDTO> getLecturerWorkload(String department) {
+        Optional<FactSnapshot> snapshot = factSnapshots.current();
+        if (snapshot.isPresent()) {
+            return timed("hod/lecturer-workload", "snapshot", () -> lecturerWorkload(snapshot.get(), department));
+        }
+        Map<String, Long> distinct = lecturerDistinctStudents(department);
+        return timed("hod/lecturer-workload", () -> reportJdbcTemplate.query(LECTURER_WORKLOAD_SQL,
+            (rs, rowNum) -> new LecturerWorkloadDTO(rs.getString("full_name"), rs.getLong("student_count"), distinct.get(rs.getString("full_name"))), department));
+    }
+
+    // Distinct students per lecturer name, merged from the lecturer-term sketches
+    private Map<String, Long> lecturerDistinctStudents(String department) {
+        if (!rollupService.isAvailable()) {
+            return timed("hod/lecturer-distinct-students", () -> reportJdbcTemplate.query(
+                "SELECT l.full_name, COUNT(DISTINCT f.student_key) AS students FROM fact_enrollment f JOIN dim_lecturer l ON f.lecturer_key = l.lecturer_key JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ? GROUP BY l.full_name",
+                rs -> {
+                    Map<String, Long> students = new HashMap<>();
+                    while (rs.next()) {
+                        students.put(rs.getString("full_name"), rs.getLong("students"));
+                    }
+                    return students;
+                }, department));
+        }
+        return timed("hod/lecturer-distinct-students", "sketches", () -> estimates(mergeSketches(
+            "SELECT l.full_name, a.students FROM agg_students_lecturer_term a JOIN dim_lecturer l ON a.lecturer_key = l.lecturer_key JOIN dim_department d ON a.department_key = d.department_key WHERE d.department_name = ?",
+            department)));
+    }
+
+    // --- Distinct students over a range of academic years (e.g. "2023/2024"), inclusive ---
+
+    // Sketches of every term in the range are merged per department and across all of them, so the
+    // cost depends on departments x terms, never on the fact volume. Falls back to exact
+    // COUNT(DISTINCT) over fact_enrollment while the rollups are stale.
+    @Cacheable(cacheNames = CACHE_NAME, key = "{'distinct-students', #departments, #fromYear, #toYear}")
+    public DistinctStudentsDTO getDistinctStudents(List<String> departments, String fromYear, String toYear) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (fromYear != null) {
+            where.append(" AND academic_year >= ?");
+            args.add(fromYear);
+        }
+        if (toYear != null) {
+            where.append(" AND academic_year <= ?");
+            args.add(toYear);
+        }
+        if (departments != null && !departments.isEmpty()) {
+            where.append(" AND department_name IN (").append(String.join(", ", Collections.nCopies(departments.size(), "?"))).append(")");
+            args.addAll(departments);
+        }
+        if (!rollupService.isAvailable()) {
+            String sql = "SELECT department_name, COUNT(DISTINCT student_key) AS students FROM " +
+                         "(SELECT d.department_name, dd.academic_year, f.student_key FROM fact_enrollment f JOIN dim_department d ON f.department_key = d.department_key JOIN dim_date dd ON f.date_key = dd.date_key) e" +
+                         where + " GROUP BY GROUPING SETS ((department_name), ()) ORDER BY department_name NULLS FIRST";
+            return timed("distinct-students", () -> reportJdbcTemplate.query(sql, rs -> {
+                long total = 0;
+                List<DepartmentStudentsDTO> rows = new ArrayList<>();
+                while (rs.next()) {
+                    if (rs.getString("department_name") == null) {
+                        total = rs.getLong("students");
+                    } else {
+                        rows.add(new DepartmentStudentsDTO(rs.getString("department_name"), rs.getLong("students")));
+                    }
+                }
+                return new DistinctStudentsDTO(total, rows, 0);
+            }, args.toArray()));
+        }
+        String sql = "SELECT department_name, students FROM " +
+                     "(SELECT d.department_name, a.academic_year, a.students FROM agg_students_department_term a JOIN dim_department d ON a.department_key = d.department_key) s" + where;
+        return timed("distinct-students", "sketches", () -> {
+            Map<String, HyperLogLog> perDepartment = mergeSketches(sql, args.toArray());
+            HyperLogLog all = new HyperLogLog();
+            perDepartment.values().forEach(all::merge);
+            List<DepartmentStudentsDTO> rows = perDepartment.entrySet().stream()
+                .map(entry -> new DepartmentStudentsDTO(entry.getKey(), entry.getValue().estimate()))
+                .toList();
+            return new DistinctStudentsDTO(all.estimate(), rows, HyperLogLog.standardError());
+        });
+    }
+
+    // Merges the sketches of each (name, sketch) row by name, ordered by name
+    private Map<String, HyperLogLog> mergeSketches(String sql, Object... args) {
+        return reportJdbcTemplate.query(sql, rs -> {
+            Map<String, HyperLogLog> merged = new TreeMap<>();
+            while (rs.next()) {
+                HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes(2));
+                merged.merge(rs.getString(1), sketch, HyperLogLog::merge);
+            }
+            return merged;
+        }, args);
+    }
+
+    private static Map<String, Long> estimates(Map<String, HyperLogLog> sketches) {
+        Map<String, Long> estimates = new HashMap<>();
+        sketches.forEach((name, sketch) -> estimates.put(name, sketch.estimate()));
+        return estimates;
+    }
+
+    // --- Ad-hoc pivot queries (POST /api/reports/query) ---
+
+    // Cached per normalized request, so repeated pivots until the next ETL run are free
+    @Cacheable(cacheNames = CACHE_NAME, key = "{'pivot', #request}")
+    public List<Map<String, Object>> runPivot(PivotRequest request) {
+        PivotPlanner.CompiledPivot plan = pivotPlanner.compile(request);
+        return timed("pivot", () -> reportJdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(plan.sql());
+            int index = 1;
+            for (String attribute : plan.filterAttributes()) {
+                ps.setArray(index++, con.createArrayOf("text", request.filters().get(attribute).toArray()));
+            }
+            ps.setInt(index, pivotPlanner.maxRows());
+            return ps;
+        }, new ColumnMapRowMapper()));
+    }
+
+    // --- Streamed exports (not cached; rows go to the client as they are read) ---
+
+    public void streamHodCoursePerformance(String department, ReportFormat format, OutputStream out) {
+        reportStreamer.stream(hodCoursePerformanceSql(), format, out, department);
+    }
+
+    public void streamLecturerWorkload(String department, ReportFormat format, OutputStream out) {
+        reportStreamer.stream(LECTURER_WORKLOAD_SQL, format, out, department);
+    }
+
+    // One row per enrollment in the department. Unordered, so the first rows leave
+    // before the scan finishes.
+    public void streamHodEnrollments(String department, ReportFormat format, OutputStream out) {
+        String sql = "SELECT f.enrollment_id, s.full_name AS student_name, c.course_code, c.course_title, l.full_name AS lecturer_name, " +
+                     "dt.academic_year, dt.semester, f.final_grade, f.is_passed, f.tuition_fee " +
+                     "FROM fact_enrollment f JOIN dim_student s ON f.student_key = s.student_key JOIN dim_course c ON f.course_key = c.course_key " +
+                     "JOIN dim_lecturer l ON f.lecturer_key = l.lecturer_key JOIN dim_date dt ON f.date_key = dt.date_key " +
+                     "JOIN dim_department d ON f.department_key = d.department_key WHERE d.department_name = ?";
+        reportStreamer.stream(sql, format, out, department);
+    }
+
+    private <T> T timed(String report, Supplier<T> query) {
+        return timed(report, "warehouse", query);
+    }
+
+    private <T> T timed(String report, String source, Supplier<T> query) {
+        return Timer.builder("report.query")
+            .tag("report", report)
+            .tag("source", source)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(query);
+    }
+
+    // --- The same reports answered from the fact snapshot, shaped and ordered like the SQL ---
+
+    private List<DepartmentPerformanceDTO> departmentPerformance(FactSnapshot snapshot) {
+        return factSnapshots.query(snapshot, SnapshotQuery.groupBy("department.department_name").passedOnly()).stream()
+            .sorted(Comparator.comparing(group -> group.key(0), Comparator.nullsLast(Comparator.naturalOrder())))
+            .map(group -> new DepartmentPerformanceDTO(group.key(0), group.passed(), group.passedAverageGrade()))
+            .toList();
+    }
+
+    private List<EnrollmentTrendDTO> enrollmentTrend(FactSnapshot snapshot) {
+        return monthlyGroups(snapshot).stream()
+            .map(group -> new EnrollmentTrendDTO(group.key(0) + "-" + group.key(2), group.count()))
+            .toList();
+    }
+
+    private List<DiversityDTO> studentDiversity(FactSnapshot snapshot) {
+        return snapshot.countDimension("student.nationality").entrySet().stream()
+            .map(entry -> new DiversityDTO(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+
+    private List<TuitionRevenueDTO> tuitionRevenue(FactSnapshot snapshot) {
+        return factSnapshots.query(snapshot, SnapshotQuery.groupBy("department.department_name")).stream()
+            .sorted(Comparator.comparingLong(SnapshotGroup::tuitionSum).reversed())
+            .map(group -> new TuitionRevenueDTO(group.key(0), group.tuition()))
+            .toList();
+    }
+
+    // Same comparison as getYoyEnrollment's SQL
+    private List<YoYEnrollmentDTO> yoyEnrollment(FactSnapshot snapshot) {
+        List<SnapshotGroup> months = monthlyGroups(snapshot);
+        if (months.isEmpty()) {
+            return List.of();
+        }
+        String latestYear = months.get(months.size() - 1).key(0);
+        Map<String, Long> previousByMonth = new HashMap<>();
+        List<YoYEnrollmentDTO> result = new ArrayList<>();
+        for (SnapshotGroup month : months) {
+            if (month.key(0).equals(latestYear)) {
+                result.add(new YoYEnrollmentDTO(month.key(2), month.count(), previousByMonth.getOrDefault(month.key(2), 0L)));
+            } else {
+                previousByMonth.put(month.key(2), month.count());
+            }
+        }
+        return result;
+    }
+
+    // (year, month, month_name) groups in calendar order
+    private List<SnapshotGroup> monthlyGroups(FactSnapshot snapshot) {
+        return factSnapshots.query(snapshot, SnapshotQuery.groupBy("date.year", "date.month", "date.month_name")).stream()
+            .sorted(Comparator.<SnapshotGroup>comparingInt(group -> Integer.parseInt(group.key(0)))
+                .thenComparingInt(group -> Integer.parseInt(group.key(1))))
+            .toList();
+    }
+
+    private List<Map<String, Object>> hodCoursePerformance(FactSnapshot snapshot, String department) {
+        SnapshotQuery query = SnapshotQuery.groupBy("course.course_title").where("department.department_name", department).gradedOnly();
+        return factSnapshots.query(snapshot, query).stream()
+            .sorted(Comparator.comparing(group -> group.key(0), Comparator.nullsLast(Comparator.naturalOrder())))
+            .map(group -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("course_title", group.key(0));
+                row.put("passed_count", group.passed());
+                row.put("failed_count", group.count() - group.passed());
+                row.put("average_grade", group.averageGrade());
+                return row;
+            })
+            .toList();
+    }
+
+    private List<TopStudentDTO> topStudents(FactSnapshot snapshot, String department) {
+        SnapshotQuery query = SnapshotQuery.groupBy("student.full_name").where("department.department_name", department).gradedOnly();
+        return factSnapshots.query(snapshot, query).stream()
+            .sorted(Comparator.comparing(SnapshotGroup::averageGrade).reversed())
+            .limit(5)
+            .map(group -> new TopStudentDTO(group.key(0), group.averageGrade()))
+            .toList();
+    }
+
+    private List<LecturerWorkloadDTO> lecturerWorkload(FactSnapshot snapshot, String department) {
+        SnapshotQuery query = SnapshotQuery.groupBy("lecturer.full_name").where("department.department_name", department);
+        // Snapshot groups only carry additive measures, so distinct students still come from the sketches
+        Map<String, Long> distinct = lecturerDistinctStudents(department);
+        return factSnapshots.query(snapshot, query).stream()
+            .sorted(Comparator.comparingLong(SnapshotGroup::count).reversed())
+            .map(group -> new LecturerWorkloadDTO(group.key(0), group.count(), distinct.get(group.key(0))))
+            .toList();
+    }
+
+    // Department names the HOD reports can be asked for, used to pre-warm the cache
+    public List<String> getDepartmentNames() {
+        return reportJdbcTemplate.queryForList("SELECT department_name FROM dim_department ORDER BY department_name", String.class);
+    }
+}
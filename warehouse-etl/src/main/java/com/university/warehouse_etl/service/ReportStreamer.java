@@ -0,0 +1,208 @@
+package com.university.warehouse_etl.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Writes a warehouse query straight to an output stream as it is read. The PostgreSQL
+// driver only honours the fetch size inside a transaction, so each export holds one
+// read-only transaction and pulls fetchSize rows at a time through a server-side cursor;
+// memory per request stays at one batch of rows whatever the result size. An export that
+// fails part-way is left without its closing bracket, so the client cannot mistake the
+// truncated body for a complete one.
+@Component
+public class ReportStreamer {
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final long statementTimeoutMillis;
+
+    public ReportStreamer(@Qualifier("reportDataSource") DataSource reportDataSource,
+                          @Qualifier("reportTransactionManager") JdbcTransactionManager transactionManager,
+                          ObjectMapper objectMapper,
+                          @Value("${app.reports.stream.fetch-size:1000}") int fetchSize,
+                          @Value("${app.reports.stream.statement-timeout:10m}") Duration statementTimeout) {
+        // Statements from JdbcTemplate are already forward-only and read-only
+        this.streamingJdbcTemplate = new JdbcTemplate(reportDataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.statementTimeoutMillis = statementTimeout.toMillis();
+    }
+
+    public void stream(String sql, ReportFormat format, OutputStream out, Object... args) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            // An export runs as long as the client keeps reading, well past the report pool's timeout
+            streamingJdbcTemplate.execute("SET LOCAL statement_timeout = " + statementTimeoutMillis);
+            try {
+                RowWriter writer = rowWriter(format, out, objectMapper);
+                streamingJdbcTemplate.query(sql, (ResultSetExtractor<Void>) rs -> {
+                    try {
+                        // From the metadata, so an empty result still gets its CSV header
+                        writer.start(rs.getMetaData());
+                        boolean first = true;
+                        while (rs.next()) {
+                            writer.row(rs);
+                            if (first) {
+                                // Get the first row to the client before the rest of the result is read
+                                writer.flush();
+                                first = false;
+                            }
+                        }
+                        return null;
+                    } catch (IOException e) {
+                        // Usually the client went away; stop reading and release the cursor
+                        throw new UncheckedIOException(e);
+                    }
+                }, args);
+                // Only a complete result is closed off; on failure the exception leaves the body truncated
+                writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    static RowWriter rowWriter(ReportFormat format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        return format == ReportFormat.CSV ? new CsvRowWriter(out) : new JsonRowWriter(out, format, objectMapper);
+    }
+
+    interface RowWriter {
+        void start(ResultSetMetaData metaData) throws SQLException, IOException;
+
+        void row(ResultSet rs) throws SQLException, IOException;
+
+        void flush() throws IOException;
+
+        // After the last row: writes whatever closes the document and flushes it
+        void finish() throws IOException;
+    }
+
+    private static final class JsonRowWriter implements RowWriter {
+        private final ObjectMapper objectMapper;
+        private final JsonGenerator generator;
+        private final boolean lineDelimited;
+        private String[] labels;
+
+        JsonRowWriter(OutputStream out, ReportFormat format, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.lineDelimited = format == ReportFormat.NDJSON;
+            if (!lineDelimited) {
+                generator.writeStartArray();
+            }
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            labels = columnLabels(metaData);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < labels.length; i++) {
+                generator.writeFieldName(labels[i]);
+                objectMapper.writeValue(generator, rs.getObject(i + 1));
+            }
+            generator.writeEndObject();
+            if (lineDelimited) {
+                generator.writeRaw('\n');
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!lineDelimited) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private int columns;
+
+        CsvRowWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException, IOException {
+            String[] labels = columnLabels(metaData);
+            columns = labels.length;
+            writer.write(String.join(",", Arrays.stream(labels).map(ReportStreamer::csvField).toList()));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                Object value = rs.getObject(i);
+                if (value != null) {
+                    writer.write(csvField(value.toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static String[] columnLabels(ResultSetMetaData metaData) throws SQLException {
+        String[] labels = new String[metaData.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        return labels;
+    }
+
+    // Quotes a value only when it contains a delimiter, quote or line break
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
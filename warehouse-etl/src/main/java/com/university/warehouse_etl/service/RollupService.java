@@ -0,0 +1,179 @@
+package com.university.warehouse_etl.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Final ETL stage: pre-aggregates fact_enrollment at department x month and course x term
+// grain so the dashboard reports no longer scan the whole fact history. Distinct students
+// cannot be summed, so they are kept as HyperLogLog sketches per department x term and
+// lecturer x term, which merge into a distinct count over any set of terms or departments.
+@Service
+public class RollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupService.class);
+
+    // Sketch rows written per batch, and group-register rows fetched per round trip
+    private static final int SKETCH_BATCH = 1000;
+    private static final int SKETCH_FETCH_SIZE = 10000;
+
+    // The register index and rank of each fact's student, split the way HyperLogLog.add does
+    private static final String STUDENT_REGISTER =
+        "CROSS JOIN LATERAL (SELECT hashtextextended(f.student_key::text, 0) AS h) x " +
+        "CROSS JOIN LATERAL (SELECT (x.h & " + (HyperLogLog.REGISTERS - 1) + ")::int AS register, " +
+        "COALESCE(NULLIF(position(B'1' IN substring(x.h::bit(64) FROM 1 FOR " + (HyperLogLog.MAX_RANK - 1) + ")), 0), " + HyperLogLog.MAX_RANK + ") AS rank) r ";
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final TransactionTemplate warehouseTransactionTemplate;
+    private final boolean enabled;
+
+    // null until we know; false while the fact table is newer than the rollups
+    private volatile Boolean available;
+
+    public RollupService(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                         @Qualifier("warehouseTransactionTemplate") TransactionTemplate warehouseTransactionTemplate,
+                         @Value("${app.reports.rollups.enabled:true}") boolean enabled) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.warehouseTransactionTemplate = warehouseTransactionTemplate;
+        this.enabled = enabled;
+    }
+
+    // Whether reports may answer from the rollups instead of fact_enrollment
+    public boolean isAvailable() {
+        if (!enabled) {
+            return false;
+        }
+        Boolean known = available;
+        if (known == null) {
+            // First ask after startup: trust rollups left behind by the last completed run
+            known = Boolean.TRUE.equals(warehouseJdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM agg_enrollment_department_month)", Boolean.class));
+            available = known;
+        }
+        return known;
+    }
+
+    // Called when fact_enrollment starts changing, so reports fall back to the fact table
+    public void markStale() {
+        available = false;
+    }
+
+    public int rebuild() {
+        log.info("--- Rebuilding enrollment rollups... ---");
+        // DELETE rather than TRUNCATE so readers keep seeing the previous rollups until commit
+        int[] rows = warehouseTransactionTemplate.execute(status -> new int[] {
+            rebuildDepartmentMonth(),
+            rebuildCourseTerm(),
+            rebuildSketches("agg_students_department_term", "department_key, academic_year, semester", "f.department_key, d.academic_year, d.semester"),
+            rebuildSketches("agg_students_lecturer_term", "lecturer_key, department_key, academic_year, semester", "f.lecturer_key, f.department_key, d.academic_year, d.semester")
+        });
+        available = true;
+        log.info("Rebuilt rollups: {} department-month rows, {} course-term rows, {} department-term and {} lecturer-term student sketches.",
+                 rows[0], rows[1], rows[2], rows[3]);
+        return rows[0] + rows[1] + rows[2] + rows[3];
+    }
+
+    private int rebuildDepartmentMonth() {
+        warehouseJdbcTemplate.update("DELETE FROM agg_enrollment_department_month");
+        return warehouseJdbcTemplate.update(
+            "INSERT INTO agg_enrollment_department_month (department_key, year, month, month_name, enrollment_count, passed_count, passed_grade_sum, passed_grade_count, tuition_sum) " +
+            "SELECT f.department_key, d.year, d.month, d.month_name, SUM(f.enrollment_count), SUM(f.is_passed), " +
+            "SUM(f.final_grade) FILTER (WHERE f.is_passed = 1), COUNT(f.final_grade) FILTER (WHERE f.is_passed = 1), SUM(f.tuition_fee) " +
+            "FROM fact_enrollment f JOIN dim_date d ON f.date_key = d.date_key " +
+            "GROUP BY f.department_key, d.year, d.month, d.month_name");
+    }
+
+    private int rebuildCourseTerm() {
+        warehouseJdbcTemplate.update("DELETE FROM agg_enrollment_course_term");
+        return warehouseJdbcTemplate.update(
+            "INSERT INTO agg_enrollment_course_term (course_key, department_key, academic_year, semester, graded_count, graded_passed_count, grade_sum) " +
+            "SELECT f.course_key, f.department_key, d.academic_year, d.semester, COUNT(*), SUM(f.is_passed), SUM(f.final_grade) " +
+            "FROM fact_enrollment f JOIN dim_date d ON f.date_key = d.date_key " +
+            "WHERE f.final_grade IS NOT NULL " +
+            "GROUP BY f.course_key, f.department_key, d.academic_year, d.semester");
+    }
+
+    // The warehouse hashes the students and keeps the highest rank per group and register, so only
+    // those rows reach the JVM. They arrive ordered by group and each sketch is written once complete.
+    private int rebuildSketches(String table, String columns, String groupBy) {
+        warehouseJdbcTemplate.update("DELETE FROM " + table);
+        int groupColumns = columns.split(",").length;
+        SketchWriter writer = new SketchWriter("INSERT INTO " + table + " (" + columns + ", students) VALUES (" + "?, ".repeat(groupColumns) + "?)", groupColumns);
+        String registerSql = "SELECT " + groupBy + ", r.register, max(r.rank) " +
+                             "FROM fact_enrollment f JOIN dim_date d ON f.date_key = d.date_key " + STUDENT_REGISTER +
+                             "GROUP BY " + groupBy + ", r.register ORDER BY " + groupBy;
+        warehouseJdbcTemplate.query(con -> {
+            // Streamed through a cursor, which the surrounding transaction keeps open
+            PreparedStatement ps = con.prepareStatement(registerSql);
+            ps.setFetchSize(SKETCH_FETCH_SIZE);
+            return ps;
+        }, writer);
+        return writer.finish();
+    }
+
+    // Builds one group's sketch at a time from the ordered register rows and inserts them in batches
+    private final class SketchWriter implements RowCallbackHandler {
+
+        private final String insertSql;
+        private final int groupColumns;
+        private final List<Object[]> batch = new ArrayList<>();
+        private Object[] group;
+        private HyperLogLog sketch;
+        private int written;
+
+        SketchWriter(String insertSql, int groupColumns) {
+            this.insertSql = insertSql;
+            this.groupColumns = groupColumns;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            Object[] key = new Object[groupColumns];
+            for (int i = 0; i < groupColumns; i++) {
+                key[i] = rs.getObject(i + 1);
+            }
+            if (!Arrays.equals(key, group)) {
+                complete();
+                group = key;
+                sketch = new HyperLogLog();
+            }
+            sketch.offer(rs.getInt(groupColumns + 1), rs.getInt(groupColumns + 2));
+        }
+
+        int finish() {
+            complete();
+            flush();
+            return written;
+        }
+
+        private void complete() {
+            if (sketch == null) {
+                return;
+            }
+            Object[] row = Arrays.copyOf(group, groupColumns + 1);
+            row[groupColumns] = sketch.toBytes();
+            batch.add(row);
+            if (batch.size() == SKETCH_BATCH) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            warehouseJdbcTemplate.batchUpdate(insertSql, batch);
+            written += batch.size();
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.university.warehouse_etl.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// SHADOW runs load each warehouse table into an empty <table>_next copy that has no keys,
+// indexes or foreign keys, build the keys and indexes once the data is in, and then swap
+// every copy in with renames inside one transaction. Readers keep seeing the previous
+// tables until that commit. What to rebuild is read from the live tables' catalog
+// entries, so schema changes carry over without touching this class.
+@Component
+public class ShadowTables {
+
+    private static final Logger log = LoggerFactory.getLogger(ShadowTables.class);
+
+    static final String SUFFIX = "_next";
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private record ForeignKey(String table, String name, String definition) {}
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final TransactionTemplate warehouseTransactionTemplate;
+
+    public ShadowTables(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                        @Qualifier("warehouseTransactionTemplate") TransactionTemplate warehouseTransactionTemplate) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.warehouseTransactionTemplate = warehouseTransactionTemplate;
+    }
+
+    // Creates an empty copy of the table (columns, NOT NULLs and defaults, so serial keys
+    // keep drawing from the live sequence) and returns its name for the loader to fill
+    public String prepare(String table) {
+        String shadow = table + SUFFIX;
+        warehouseJdbcTemplate.execute("DROP TABLE IF EXISTS " + shadow);
+        warehouseJdbcTemplate.execute("CREATE TABLE " + shadow + " (LIKE " + table + " INCLUDING DEFAULTS)");
+        return shadow;
+    }
+
+    // Adds the live table's primary key, unique constraints and plain indexes to the loaded
+    // copy under temporary names, then analyzes it so the first reports get sane plans
+    public void buildIndexes(String table) {
+        String shadow = table + SUFFIX;
+        long start = System.nanoTime();
+        for (Map<String, Object> constraint : keyConstraints(table)) {
+            warehouseJdbcTemplate.execute("ALTER TABLE " + shadow + " ADD CONSTRAINT " + shadowName((String) constraint.get("name")) + " " + constraint.get("definition"));
+        }
+        for (Map<String, Object> index : plainIndexes(table)) {
+            // pg_get_indexdef gives "CREATE [UNIQUE] INDEX name ON [ONLY] schema.table USING ..."
+            String definition = (String) index.get("definition");
+            String create = definition.startsWith("CREATE UNIQUE") ? "CREATE UNIQUE INDEX " : "CREATE INDEX ";
+            warehouseJdbcTemplate.execute(create + shadowName((String) index.get("name")) + " ON " + shadow + definition.substring(definition.indexOf(" USING ")));
+        }
+        warehouseJdbcTemplate.execute("ANALYZE " + shadow);
+        log.info("Built keys and indexes on {} in {} ms.", shadow, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Replaces every table with its loaded copy in one transaction. afterSwap runs inside
+    // the same transaction, so anything recorded there commits together with the data.
+    // Foreign keys come back NOT VALID (no scan under the exclusive lock) and are
+    // validated after the commit, which only blocks writers.
+    public void swap(List<String> tables, Runnable afterSwap) {
+        long start = System.nanoTime();
+        List<ForeignKey> foreignKeys = warehouseTransactionTemplate.execute(status -> {
+            List<ForeignKey> touching = foreignKeysTouching(tables);
+            List<String> keyNames = new ArrayList<>();
+            List<String> indexNames = new ArrayList<>();
+            for (String table : tables) {
+                keyConstraints(table).forEach(constraint -> keyNames.add(table + "." + constraint.get("name")));
+                plainIndexes(table).forEach(index -> indexNames.add((String) index.get("name")));
+            }
+
+            // Foreign keys held by tables that are not swapped would block the DROP
+            for (ForeignKey foreignKey : touching) {
+                if (!tables.contains(foreignKey.table())) {
+                    warehouseJdbcTemplate.execute("ALTER TABLE " + foreignKey.table() + " DROP CONSTRAINT " + foreignKey.name());
+                }
+            }
+            // Serial sequences are owned by the live column and would be dropped with it
+            for (String table : tables) {
+                warehouseJdbcTemplate.queryForList(
+                    "SELECT a.attname, pg_get_serial_sequence(?, a.attname) AS sequence_name FROM pg_attribute a " +
+                    "WHERE a.attrelid = ?::regclass AND a.attnum > 0 AND NOT a.attisdropped AND pg_get_serial_sequence(?, a.attname) IS NOT NULL",
+                    table, table, table)
+                    .forEach(column -> warehouseJdbcTemplate.execute(
+                        "ALTER SEQUENCE " + column.get("sequence_name") + " OWNED BY " + table + SUFFIX + "." + column.get("attname")));
+            }
+
+            warehouseJdbcTemplate.execute("DROP TABLE " + String.join(", ", tables));
+            for (String table : tables) {
+                warehouseJdbcTemplate.execute("ALTER TABLE " + table + SUFFIX + " RENAME TO " + table);
+            }
+            for (String qualified : keyNames) {
+                String table = qualified.substring(0, qualified.indexOf('.'));
+                String name = qualified.substring(qualified.indexOf('.') + 1);
+                warehouseJdbcTemplate.execute("ALTER TABLE " + table + " RENAME CONSTRAINT " + shadowName(name) + " TO " + name);
+            }
+            for (String name : indexNames) {
+                warehouseJdbcTemplate.execute("ALTER INDEX " + shadowName(name) + " RENAME TO " + name);
+            }
+            for (ForeignKey foreignKey : touching) {
+                warehouseJdbcTemplate.execute("ALTER TABLE " + foreignKey.table() + " ADD CONSTRAINT " + foreignKey.name() + " " + foreignKey.definition() + " NOT VALID");
+            }
+            afterSwap.run();
+            return touching;
+        });
+        log.info("Swapped in {} shadow tables in {} ms.", tables.size(), (System.nanoTime() - start) / 1_000_000);
+
+        for (ForeignKey foreignKey : foreignKeys) {
+            warehouseJdbcTemplate.execute("ALTER TABLE " + foreignKey.table() + " VALIDATE CONSTRAINT " + foreignKey.name());
+        }
+    }
+
+    // Drops whatever copies a failed run left behind; the live tables are untouched
+    public void discard(List<String> tables) {
+        for (String table : tables) {
+            warehouseJdbcTemplate.execute("DROP TABLE IF EXISTS " + table + SUFFIX);
+        }
+    }
+
+    private List<Map<String, Object>> keyConstraints(String table) {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT conname AS name, pg_get_constraintdef(oid) AS definition FROM pg_constraint " +
+            "WHERE conrelid = ?::regclass AND contype IN ('p', 'u') ORDER BY contype, conname", table);
+    }
+
+    // Indexes that do not back a constraint
+    private List<Map<String, Object>> plainIndexes(String table) {
+        return warehouseJdbcTemplate.queryForList(
+            "SELECT c.relname AS name, pg_get_indexdef(i.indexrelid) AS definition FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+            "WHERE i.indrelid = ?::regclass AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = i.indexrelid) ORDER BY c.relname", table);
+    }
+
+    private List<ForeignKey> foreignKeysTouching(List<String> tables) {
+        List<ForeignKey> foreignKeys = new ArrayList<>();
+        for (Map<String, Object> row : warehouseJdbcTemplate.queryForList(
+                "SELECT conrelid::regclass::text AS table_name, conname, pg_get_constraintdef(oid) AS definition, confrelid::regclass::text AS referenced FROM pg_constraint WHERE contype = 'f'")) {
+            if (tables.contains((String) row.get("table_name")) || tables.contains((String) row.get("referenced"))) {
+                foreignKeys.add(new ForeignKey((String) row.get("table_name"), (String) row.get("conname"), (String) row.get("definition")));
+            }
+        }
+        return foreignKeys;
+    }
+
+    static String shadowName(String name) {
+        String base = name.length() + SUFFIX.length() > MAX_IDENTIFIER_LENGTH ? name.substring(0, MAX_IDENTIFIER_LENGTH - SUFFIX.length()) : name;
+        return base + SUFFIX;
+    }
+}
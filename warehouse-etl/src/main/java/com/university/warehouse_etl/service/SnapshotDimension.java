@@ -0,0 +1,64 @@
+package com.university.warehouse_etl.service;
+
+import java.util.List;
+
+// The warehouse dimensions, with the attributes that FactSnapshot and pivot queries can
+// filter and group on. Attributes are addressed as "<dimension>.<column>",
+// e.g. "department.department_name" or "date.academic_year".
+public enum SnapshotDimension {
+    DATE("dim_date", "date_key", "year", "month", "month_name", "quarter", "academic_year", "semester"),
+    STUDENT("dim_student", "student_key", "full_name", "gender", "nationality", "age_group"),
+    COURSE("dim_course", "course_key", "course_code", "course_title", "level"),
+    DEPARTMENT("dim_department", "department_key", "department_name", "dean_name"),
+    LECTURER("dim_lecturer", "lecturer_key", "full_name");
+
+    private final String table;
+    private final String keyColumn;
+    private final List<String> attributes;
+
+    SnapshotDimension(String table, String keyColumn, String... attributes) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.attributes = List.of(attributes);
+    }
+
+    public String table() {
+        return table;
+    }
+
+    // Also the name of the referencing column in fact_enrollment
+    public String keyColumn() {
+        return keyColumn;
+    }
+
+    public List<String> attributes() {
+        return attributes;
+    }
+
+    public String prefix() {
+        return name().toLowerCase();
+    }
+
+    // Dimension of a "<dimension>.<column>" attribute, checking that the column is one we expose
+    public static SnapshotDimension ofAttribute(String attribute) {
+        int dot = attribute.indexOf('.');
+        if (dot > 0) {
+            String prefix = attribute.substring(0, dot);
+            String column = attribute.substring(dot + 1);
+            for (SnapshotDimension dimension : values()) {
+                if (dimension.prefix().equals(prefix) && dimension.attributes.contains(column)) {
+                    return dimension;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown attribute: " + attribute);
+    }
+
+    public static String column(String attribute) {
+        return attribute.substring(attribute.indexOf('.') + 1);
+    }
+
+    public String selectSql() {
+        return "SELECT " + keyColumn + ", " + String.join(", ", attributes) + " FROM " + table;
+    }
+}
@@ -0,0 +1,35 @@
+package com.university.warehouse_etl.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+// One result group of a SnapshotQuery. Grades and tuition are summed as exact
+// hundredths; averages round half-up to two places like NUMERIC(10,2) does.
+public record SnapshotGroup(List<String> keys, long count, long passed, long graded, long gradeSum,
+                            long passedGraded, long passedGradeSum, long tuitionSum) {
+
+    public String key(int index) {
+        return keys.get(index);
+    }
+
+    // Average over rows with a grade, null when there are none (as AVG returns)
+    public BigDecimal averageGrade() {
+        return average(gradeSum, graded);
+    }
+
+    public BigDecimal passedAverageGrade() {
+        return average(passedGradeSum, passedGraded);
+    }
+
+    public BigDecimal tuition() {
+        return BigDecimal.valueOf(tuitionSum, 2);
+    }
+
+    private static BigDecimal average(long sumHundredths, long count) {
+        if (count == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(sumHundredths, 2).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+    }
+}
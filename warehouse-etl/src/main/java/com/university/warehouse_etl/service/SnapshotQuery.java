@@ -0,0 +1,39 @@
+package com.university.warehouse_etl.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// A filter + group-by over FactSnapshot. Every group carries all the aggregates
+// (see SnapshotGroup), so the query only says which rows and which grouping.
+public record SnapshotQuery(List<String> groupBy, Map<String, Set<String>> filters, boolean onlyPassed, boolean onlyGraded) {
+
+    public SnapshotQuery {
+        groupBy = List.copyOf(groupBy);
+        filters = Map.copyOf(filters);
+    }
+
+    public static SnapshotQuery groupBy(String... attributes) {
+        return new SnapshotQuery(List.of(attributes), Map.of(), false, false);
+    }
+
+    // Keeps rows whose attribute is one of the values; like "= NULL" in SQL, a null value matches nothing
+    public SnapshotQuery where(String attribute, String... values) {
+        Map<String, Set<String>> combined = new LinkedHashMap<>(filters);
+        combined.put(attribute, Arrays.stream(values).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet()));
+        return new SnapshotQuery(groupBy, combined, onlyPassed, onlyGraded);
+    }
+
+    public SnapshotQuery passedOnly() {
+        return new SnapshotQuery(groupBy, filters, true, onlyGraded);
+    }
+
+    // Rows with a final grade, like "final_grade IS NOT NULL"
+    public SnapshotQuery gradedOnly() {
+        return new SnapshotQuery(groupBy, filters, onlyPassed, true);
+    }
+}
@@ -0,0 +1,54 @@
+package com.university.warehouse_etl.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// A read-only REPEATABLE READ transaction on the operational DB whose snapshot is exported
+// (pg_export_snapshot) so every extract of one ETL run can import it and see the same data.
+// The snapshot is only valid while this transaction stays open, so it holds one operational
+// connection until closed - and holds back vacuum there for as long, so close it promptly.
+public class SourceSnapshot implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SourceSnapshot.class);
+
+    private final Connection connection;
+    private final String id;
+    private final OffsetDateTime clock;
+    private final Runnable onClose;
+
+    SourceSnapshot(Connection connection, String id, OffsetDateTime clock, Runnable onClose) {
+        this.connection = connection;
+        this.id = id;
+        this.clock = clock;
+        this.onClose = onClose;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    // The source's now() when the snapshot was taken; the watermark for everything read through it
+    public OffsetDateTime clock() {
+        return clock;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.warn("Could not end the source snapshot transaction: {}", e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Could not release the source snapshot connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.university.warehouse_etl.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Streams rows from the operational DB straight into a staging table using
+// COPY ... TO STDOUT on the source and COPY ... FROM STDIN on the target.
+// Each copy reads in its own read-only REPEATABLE READ transaction, importing the run's
+// source snapshot when one is open, so all tables of a run come from the same instant.
+// Reading and writing overlap: the calling thread reads the source and hands rows to a
+// writer thread through a bounded queue, so at most queue-rows rows are ever on the heap
+// and a slow warehouse throttles the source read instead of piling rows up.
+@Component
+public class StagingCopier {
+
+    // Marks the end of the copy in the queue
+    private static final byte[] END = new byte[0];
+    private static final long POLL_MILLIS = 100;
+
+    private final JdbcTemplate operationalJdbcTemplate;
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final ExecutorService writerExecutor;
+    private final int bufferSize;
+    private final int queueRows;
+
+    private volatile SourceSnapshot snapshot;
+
+    public StagingCopier(@Qualifier("operationalJdbcTemplate") JdbcTemplate operationalJdbcTemplate,
+                         @Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                         @Qualifier("etlCopyWriterExecutor") ExecutorService writerExecutor,
+                         @Value("${app.etl.copy.buffer-bytes:65536}") int bufferSize,
+                         @Value("${app.etl.copy.queue-rows:10000}") int queueRows) {
+        this.operationalJdbcTemplate = operationalJdbcTemplate;
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.writerExecutor = writerExecutor;
+        this.bufferSize = bufferSize;
+        this.queueRows = queueRows;
+    }
+
+    // Exports a snapshot that every copy imports until it is closed. One run at a time.
+    public SourceSnapshot openSnapshot() {
+        Connection connection = null;
+        try {
+            connection = operationalJdbcTemplate.getDataSource().getConnection();
+            beginReadOnly(connection);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT pg_export_snapshot(), now()")) {
+                rs.next();
+                snapshot = new SourceSnapshot(connection, rs.getString(1), rs.getObject(2, OffsetDateTime.class), () -> snapshot = null);
+                return snapshot;
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new DataAccessResourceFailureException("Could not export a snapshot of the operational DB", e);
+        }
+    }
+
+    // The clock of the open snapshot, if any
+    public Optional<OffsetDateTime> snapshotClock() {
+        SourceSnapshot current = snapshot;
+        return current == null ? Optional.empty() : Optional.of(current.clock());
+    }
+
+    // The column list is applied to the target explicitly, so the source query
+    // must select its columns in that same order.
+    public long copy(String sourceQuery, String stagingTable, String columns) {
+        String copyOutSql = "COPY (" + sourceQuery + ") TO STDOUT";
+        String copyInSql = "COPY " + stagingTable + " (" + columns + ") FROM STDIN";
+        SourceSnapshot current = snapshot;
+        return warehouseJdbcTemplate.execute((ConnectionCallback<Long>) target ->
+            operationalJdbcTemplate.execute((ConnectionCallback<Long>) source -> {
+                // The pool resets autocommit, read-only and isolation when the connection goes back
+                beginReadOnly(source);
+                try {
+                    if (current != null) {
+                        try (Statement statement = source.createStatement()) {
+                            // The id comes from pg_export_snapshot, it cannot be bound
+                            statement.execute("SET TRANSACTION SNAPSHOT '" + current.id() + "'");
+                        }
+                    }
+                    return pipe(source, copyOutSql, target, copyInSql);
+                } finally {
+                    source.rollback();
+                }
+            }));
+    }
+
+    private static void beginReadOnly(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    }
+
+    private long pipe(Connection source, String copyOutSql, Connection target, String copyInSql) throws SQLException {
+        BlockingQueue<byte[]> rows = new ArrayBlockingQueue<>(queueRows);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        PGConnection pgTarget = target.unwrap(PGConnection.class);
+        Future<Long> writer = writerExecutor.submit(() -> write(pgTarget, copyInSql, rows, abandoned));
+        CopyOut copyOut = null;
+        try {
+            copyOut = source.unwrap(PGConnection.class).getCopyAPI().copyOut(copyOutSql);
+            byte[] row;
+            while ((row = copyOut.readFromCopy()) != null) {
+                hand(rows, row, writer);
+            }
+            hand(rows, END, writer);
+            return awaitWriter(writer);
+        } catch (SQLException | RuntimeException e) {
+            abandoned.set(true);
+            cancelQuietly(copyOut);
+            // Let the writer abort its COPY before the target connection goes back to the pool
+            awaitQuietly(writer);
+            throw e;
+        }
+    }
+
+    // Blocks while the queue is full; gives up once the writer has stopped, since only a failed writer stops early
+    private static void hand(BlockingQueue<byte[]> rows, byte[] row, Future<Long> writer) throws SQLException {
+        try {
+            if (writer.isDone()) {
+                awaitWriter(writer);
+            }
+            while (!rows.offer(row, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    awaitWriter(writer);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while copying into staging", e);
+        }
+    }
+
+    private long write(PGConnection target, String copyInSql, BlockingQueue<byte[]> rows, AtomicBoolean abandoned) throws SQLException, IOException, InterruptedException {
+        PGCopyOutputStream out = new PGCopyOutputStream(target, copyInSql, bufferSize);
+        try {
+            long written = 0;
+            while (true) {
+                byte[] row = rows.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (row == END) {
+                    break;
+                }
+                if (row != null) {
+                    out.write(row);
+                    written++;
+                } else if (abandoned.get()) {
+                    cancelQuietly(out);
+                    return written;
+                }
+            }
+            out.endCopy();
+            return written;
+        } catch (IOException | SQLException | RuntimeException | InterruptedException e) {
+            cancelQuietly(out);
+            throw e;
+        }
+    }
+
+    private static long awaitWriter(Future<Long> writer) throws SQLException {
+        try {
+            return writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while copying into staging", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw new UncheckedIOException("COPY into staging failed", ioException);
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("COPY into staging failed", cause);
+        }
+    }
+
+    private static void awaitQuietly(Future<Long> writer) {
+        try {
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // the original failure is the one worth reporting
+        }
+    }
+
+    private static void cancelQuietly(CopyOut copyOut) {
+        if (copyOut == null || !copyOut.isActive()) {
+            return;
+        }
+        try {
+            copyOut.cancelCopy();
+        } catch (SQLException ignored) {
+            // the original failure is the one worth reporting
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the original failure is the one worth reporting
+        }
+    }
+
+    // Abort the half-written COPY so the target connection goes back to the pool clean
+    private static void cancelQuietly(PGCopyOutputStream out) {
+        if (!out.isActive()) {
+            return;
+        }
+        try {
+            out.cancelCopy();
+        } catch (SQLException ignored) {
+            // the original failure is the one worth reporting
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.university.warehouse_etl.service;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// The checkpoints one step of one ETL run has committed. A resumed step starts with the
+// ones from its earlier attempt and skips that work. record() must run inside the
+// transaction that commits the work it stands for, so the two can never disagree.
+public class StepCheckpoints {
+
+    static final String EXTRACT = "extract";
+
+    // For callers outside a ledger run: nothing to resume and nothing recorded
+    public static final StepCheckpoints NONE = new StepCheckpoints(null, 0, null, Map.of(), null);
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final long runId;
+    private final String step;
+    private final Map<String, Long> committed;
+    private final OffsetDateTime extractedAt;
+
+    StepCheckpoints(JdbcTemplate warehouseJdbcTemplate, long runId, String step, Map<String, Long> committed, OffsetDateTime extractedAt) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.runId = runId;
+        this.step = step;
+        this.committed = new ConcurrentHashMap<>(committed);
+        this.extractedAt = extractedAt;
+    }
+
+    public boolean contains(String checkpoint) {
+        return committed.containsKey(checkpoint);
+    }
+
+    // Rows recorded with a committed checkpoint, 0 if it is not committed
+    public long rows(String checkpoint) {
+        return committed.getOrDefault(checkpoint, 0L);
+    }
+
+    // Committed checkpoints starting with the prefix, sorted
+    public Set<String> withPrefix(String prefix) {
+        Set<String> matching = new TreeSet<>();
+        for (String checkpoint : committed.keySet()) {
+            if (checkpoint.startsWith(prefix)) {
+                matching.add(checkpoint);
+            }
+        }
+        return matching;
+    }
+
+    // The source clock of a committed extract, so a resumed step can skip extracting again
+    public Optional<OffsetDateTime> extractedAt() {
+        return contains(EXTRACT) ? Optional.ofNullable(extractedAt) : Optional.empty();
+    }
+
+    public void record(String checkpoint, long rows) {
+        insert(checkpoint, rows, null);
+    }
+
+    public void recordExtract(long rows, OffsetDateTime sourceClock) {
+        insert(EXTRACT, rows, sourceClock);
+    }
+
+    private void insert(String checkpoint, long rows, OffsetDateTime sourceClock) {
+        if (warehouseJdbcTemplate != null) {
+            warehouseJdbcTemplate.update(
+                "INSERT INTO etl_run_checkpoint (run_id, step, checkpoint, rows_written, extracted_at) VALUES (?, ?, ?, ?, ?) " +
+                "ON CONFLICT (run_id, step, checkpoint) DO UPDATE SET rows_written = EXCLUDED.rows_written, extracted_at = EXCLUDED.extracted_at, committed_at = now()",
+                runId, step, checkpoint, rows, sourceClock);
+        }
+        committed.put(checkpoint, rows);
+    }
+}
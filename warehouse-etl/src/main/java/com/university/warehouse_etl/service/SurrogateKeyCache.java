@@ -0,0 +1,94 @@
+package com.university.warehouse_etl.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+// Natural ID -> surrogate key lookups for every dimension, shared across ETL steps.
+// Dimension loaders publish the keys their own INSERT ... RETURNING produced, so the
+// fact load no longer re-reads the dimension tables. A dimension that has not been
+// loaded since startup (e.g. the first incremental run) is read from the warehouse once.
+@Component
+public class SurrogateKeyCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SurrogateKeyCache.class);
+
+    public enum Dimension {
+        STUDENT("dim_student", "student_id", "student_key"),
+        COURSE("dim_course", "course_id", "course_key"),
+        LECTURER("dim_lecturer", "lecturer_id", "lecturer_key"),
+        DEPARTMENT("dim_department", "department_id", "department_key");
+
+        private final String table;
+        private final String naturalKey;
+        private final String surrogateKey;
+
+        Dimension(String table, String naturalKey, String surrogateKey) {
+            this.table = table;
+            this.naturalKey = naturalKey;
+            this.surrogateKey = surrogateKey;
+        }
+
+        // Appended to a dimension INSERT so it hands back what the cache needs
+        public String returning() {
+            return " RETURNING " + naturalKey + ", " + surrogateKey;
+        }
+    }
+
+    // Reads (natural id, surrogate key) rows, e.g. from a RETURNING clause
+    public static final ResultSetExtractor<IntKeyMap> KEY_COLLECTOR = rs -> {
+        IntKeyMap keys = new IntKeyMap();
+        while (rs.next()) {
+            keys.put(rs.getInt(1), rs.getInt(2));
+        }
+        return keys;
+    };
+
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final Map<Dimension, IntKeyMap> keys = new ConcurrentHashMap<>();
+
+    public SurrogateKeyCache(@Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate) {
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+    }
+
+    // The returned map is read-only; loaders publish a new one rather than mutating it
+    public IntKeyMap keys(Dimension dimension) {
+        return keys.computeIfAbsent(dimension, this::loadFromWarehouse);
+    }
+
+    // A full reload produced every key of the dimension
+    public void replace(Dimension dimension, IntKeyMap loaded) {
+        keys.put(dimension, loaded.compact());
+    }
+
+    // An incremental load only returns the rows it touched, so they are layered over the
+    // current keys (copy-on-write, readers never see a half-updated map)
+    public void merge(Dimension dimension, IntKeyMap changed) {
+        keys.compute(dimension, (dim, current) -> {
+            if (current == null) {
+                return loadFromWarehouse(dim);
+            }
+            IntKeyMap merged = current.copy();
+            changed.forEach(merged::put);
+            return merged.compact();
+        });
+    }
+
+    // Called before a dimension is truncated so nobody resolves against stale keys
+    public void invalidate(Dimension dimension) {
+        keys.remove(dimension);
+    }
+
+    private IntKeyMap loadFromWarehouse(Dimension dimension) {
+        IntKeyMap loaded = warehouseJdbcTemplate.query(
+            "SELECT " + dimension.naturalKey + ", " + dimension.surrogateKey + " FROM " + dimension.table, KEY_COLLECTOR);
+        log.info("Loaded {} surrogate keys for {} from the warehouse.", loaded.size(), dimension.table);
+        return loaded.compact();
+    }
+}
@@ -0,0 +1,12 @@
+package com.university.warehouse_etl.service;
+
+// Where a step transforms its staged rows. Staging and the warehouse share a database,
+// so the transforms can run there as one INSERT ... SELECT instead of a JVM round trip.
+public enum TransformEngine {
+    // Read staging into the JVM, transform per row (EtlTransforms), write back in batches
+    JAVA,
+    // One set-based INSERT ... SELECT joining staging to the dimensions
+    SQL,
+    // Load with JAVA, then fail the step if the SQL engine would have produced different rows
+    VERIFY
+}
@@ -0,0 +1,55 @@
+package com.university.warehouse_etl.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Keeps the per-source-table high-water mark (operational last_updated) in etl_watermark.
+@Component
+public class WatermarkStore {
+
+    private final JdbcTemplate operationalJdbcTemplate;
+    private final JdbcTemplate warehouseJdbcTemplate;
+    private final Duration lookback;
+
+    public WatermarkStore(@Qualifier("operationalJdbcTemplate") JdbcTemplate operationalJdbcTemplate,
+                          @Qualifier("warehouseJdbcTemplate") JdbcTemplate warehouseJdbcTemplate,
+                          @Value("${app.etl.incremental.lookback:PT5M}") Duration lookback) {
+        this.operationalJdbcTemplate = operationalJdbcTemplate;
+        this.warehouseJdbcTemplate = warehouseJdbcTemplate;
+        this.lookback = lookback;
+    }
+
+    // Captured before a table is extracted; becomes the next watermark once its load succeeds
+    public OffsetDateTime sourceClock() {
+        return operationalJdbcTemplate.queryForObject("SELECT now()", OffsetDateTime.class);
+    }
+
+    // The lower bound for the next extract. We step back by the lookback window so rows
+    // committed late by transactions that started before the last run are not missed;
+    // re-reading them is harmless because incremental loads upsert by natural key.
+    public Optional<OffsetDateTime> changedSince(String sourceTable) {
+        List<OffsetDateTime> marks = warehouseJdbcTemplate.query(
+            "SELECT last_extracted_at FROM etl_watermark WHERE source_table = ?",
+            (rs, rowNum) -> rs.getObject(1, OffsetDateTime.class), sourceTable);
+        return marks.stream().findFirst().map(mark -> mark.minus(lookback));
+    }
+
+    // Append-only sources keep their own high-water mark but re-read the same window
+    public Duration lookback() {
+        return lookback;
+    }
+
+    public void advance(String sourceTable, OffsetDateTime extractedAt) {
+        warehouseJdbcTemplate.update(
+            "INSERT INTO etl_watermark (source_table, last_extracted_at) VALUES (?, ?) " +
+            "ON CONFLICT (source_table) DO UPDATE SET last_extracted_at = EXCLUDED.last_extracted_at, updated_at = now()",
+            sourceTable, extractedAt);
+    }
+}
@@ -0,0 +1,104 @@
+package com.university.warehouse_etl.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class EtlTaskGraphTests {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void factRunsAfterEveryDimension() {
+		List<String> order = new CopyOnWriteArrayList<>();
+		Map<String, Duration> timings = new EtlTaskGraph()
+			.step("dim_a", () -> order.add("dim_a"))
+			.step("dim_b", () -> order.add("dim_b"))
+			.step("fact", () -> order.add("fact"), "dim_a", "dim_b")
+			.run(executor);
+
+		assertEquals(3, timings.size());
+		assertEquals("fact", order.get(2));
+	}
+
+	@Test
+	void failureSkipsDependentSteps() {
+		AtomicBoolean factRan = new AtomicBoolean();
+		EtlTaskGraph graph = new EtlTaskGraph()
+			.step("dim_a", () -> { throw new IllegalStateException("boom"); })
+			.step("fact", () -> factRan.set(true), "dim_a");
+
+		EtlStepException failure = assertThrows(EtlStepException.class, () -> graph.run(executor));
+		assertEquals("dim_a", failure.getStep());
+		assertTrue(failure.getCause() instanceof IllegalStateException);
+		assertFalse(factRan.get());
+	}
+
+	@Test
+	void failureStopsRunningStepsBeforeItIsRethrown() {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean stopped = new AtomicBoolean();
+		EtlTaskGraph graph = new EtlTaskGraph()
+			.step("dim_slow", () -> {
+				started.countDown();
+				// One unit of work after another until the interrupt is noticed
+				while (!Thread.currentThread().isInterrupted()) {
+					Thread.onSpinWait();
+				}
+				stopped.set(true);
+			})
+			.step("dim_failing", () -> {
+				try {
+					started.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IllegalStateException("boom");
+			});
+
+		EtlStepException failure = assertThrows(EtlStepException.class, () -> graph.run(executor));
+		assertEquals("dim_failing", failure.getStep());
+		assertTrue(stopped.get());
+	}
+
+	@Test
+	void rejectsUndeclaredDependency() {
+		assertThrows(IllegalArgumentException.class, () -> new EtlTaskGraph().step("fact", () -> {}, "dim_missing"));
+	}
+
+	@Test
+	void onlyRunsTheNamedStep() {
+		List<String> order = new CopyOnWriteArrayList<>();
+		Map<String, Duration> timings = new EtlTaskGraph()
+			.step("dim_a", () -> order.add("dim_a"))
+			.step("fact", () -> order.add("fact"), "dim_a")
+			.only("fact")
+			.run(executor);
+
+		assertEquals(List.of("fact"), order);
+		assertEquals(1, timings.size());
+	}
+
+	@Test
+	void onlyRejectsUnknownStep() {
+		assertThrows(IllegalArgumentException.class, () -> new EtlTaskGraph().step("dim_a", () -> {}).only("fact"));
+	}
+}
@@ -0,0 +1,34 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.OffsetDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.university.warehouse_etl.service.DataVersionStore.DataVersion;
+
+class DataVersionStoreTests {
+
+	private final DataVersion version = new DataVersion(3, OffsetDateTime.parse("2025-01-01T02:00:00Z"));
+
+	@Test
+	void etagWithoutScopeIsTheVersion() {
+		assertEquals("W/\"v3\"", version.etag());
+	}
+
+	@Test
+	void etagDependsOnScope() {
+		assertEquals(version.etag("Computer Science"), version.etag("Computer Science"));
+		assertNotEquals(version.etag("Computer Science"), version.etag("Mathematics"));
+		assertNotEquals(version.etag(true, null), version.etag(false, null));
+		assertNotEquals(version.etag("Mathematics"), new DataVersion(4, version.publishedAt()).etag("Mathematics"));
+	}
+
+	@Test
+	void etagIsAValidHeaderValue() {
+		assertTrue(version.etag("Arts \"& Humanities\"", "é").matches("W/\"v3-[0-9a-f]{16}\""));
+	}
+}
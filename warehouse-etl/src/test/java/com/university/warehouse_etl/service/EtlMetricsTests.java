@@ -0,0 +1,38 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EtlMetricsTests {
+
+	@Test
+	void phaseCountersAccumulateAcrossRuns() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		EtlMetrics metrics = new EtlMetrics(registry);
+
+		metrics.recordPhase("fact_enrollment", "transform", 100, 90, 10, TimeUnit.SECONDS.toNanos(1));
+		metrics.recordPhase("fact_enrollment", "transform", 50, 50, 0, TimeUnit.SECONDS.toNanos(1));
+
+		assertEquals(150, registry.get("etl.rows.read").tags("step", "fact_enrollment", "phase", "transform").counter().count());
+		assertEquals(140, registry.get("etl.rows.written").tags("step", "fact_enrollment", "phase", "transform").counter().count());
+		assertEquals(10, registry.get("etl.rows.skipped").tags("step", "fact_enrollment", "phase", "transform").counter().count());
+		assertEquals(2, registry.get("etl.phase.duration").tags("step", "fact_enrollment", "phase", "transform").timer().count());
+	}
+
+	@Test
+	void throughputGaugeReportsLatestRun() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		EtlMetrics metrics = new EtlMetrics(registry);
+
+		metrics.recordPhase("dim_student", "load", 1000, 1000, 0, TimeUnit.SECONDS.toNanos(2));
+		assertEquals(500, registry.get("etl.phase.throughput").tags("step", "dim_student", "phase", "load").gauge().value());
+
+		metrics.recordPhase("dim_student", "load", 1000, 1000, 0, TimeUnit.MILLISECONDS.toNanos(500));
+		assertEquals(2000, registry.get("etl.phase.throughput").tags("step", "dim_student", "phase", "load").gauge().value());
+	}
+}
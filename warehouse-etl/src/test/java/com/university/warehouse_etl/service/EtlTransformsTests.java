@@ -0,0 +1,86 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.Test;
+
+class EtlTransformsTests {
+
+	@Test
+	void dateKeyMatchesFormattedDate() {
+		DateTimeFormatter keyFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+		for (LocalDate date = LocalDate.of(2020, 1, 1); date.getYear() < 2026; date = date.plusDays(1)) {
+			assertEquals(Integer.parseInt(date.format(keyFormatter)), EtlTransforms.dateKey(date));
+		}
+	}
+
+	@Test
+	void enrollmentDateKeyFollowsSemester() {
+		assertEquals(20240901, EtlTransforms.enrollmentDateKey(2024, 1));
+		assertEquals(20250201, EtlTransforms.enrollmentDateKey(2024, 2));
+	}
+
+	@Test
+	void passedFlagIgnoresCase() {
+		assertEquals(1, EtlTransforms.passedFlag("passed"));
+		assertEquals(0, EtlTransforms.passedFlag("Failed"));
+		assertEquals(0, EtlTransforms.passedFlag(null));
+	}
+
+	@Test
+	void academicYearAndSemesterFollowSeptemberStart() {
+		assertEquals("2024/2025", EtlTransforms.academicYear(LocalDate.of(2024, 9, 1)));
+		assertEquals("Semester 1", EtlTransforms.semester(LocalDate.of(2024, 12, 31)));
+		assertEquals("2024/2025", EtlTransforms.academicYear(LocalDate.of(2025, 5, 31)));
+		assertEquals("Semester 2", EtlTransforms.semester(LocalDate.of(2025, 1, 1)));
+		assertEquals("2024/2025", EtlTransforms.academicYear(LocalDate.of(2025, 8, 31)));
+		assertEquals("Summer", EtlTransforms.semester(LocalDate.of(2025, 6, 1)));
+	}
+
+	@Test
+	void ageGroupBucketsOnBirthday() {
+		LocalDate asOf = LocalDate.of(2025, 6, 15);
+		assertEquals("18-21", EtlTransforms.ageGroup(LocalDate.of(2003, 6, 16), asOf));
+		assertEquals("22-25", EtlTransforms.ageGroup(LocalDate.of(2003, 6, 15), asOf));
+		assertEquals("22-25", EtlTransforms.ageGroup(LocalDate.of(1999, 6, 16), asOf));
+		assertEquals("26+", EtlTransforms.ageGroup(LocalDate.of(1999, 6, 15), asOf));
+		assertNull(EtlTransforms.ageGroup(null, asOf));
+	}
+
+	@Test
+	void fullNameLeavesOutMissingPartsLikeConcatWs() {
+		assertEquals("Ada Lovelace", EtlTransforms.fullName("Ada", "Lovelace"));
+		assertEquals("Lovelace", EtlTransforms.fullName(null, "Lovelace"));
+		assertEquals("Ada", EtlTransforms.fullName("Ada", null));
+		assertEquals("", EtlTransforms.fullName(null, null));
+	}
+
+	// The SQL twins are pinned here; TransformEngine.VERIFY checks them against the Java transforms on real data
+
+	@Test
+	void enrollmentDateKeySql() {
+		assertEquals("CASE WHEN se.semester = 1 THEN se.academic_year * 10000 + 901 ELSE (se.academic_year + 1) * 10000 + 201 END",
+				EtlTransforms.enrollmentDateKeySql("se.academic_year", "se.semester"));
+	}
+
+	@Test
+	void fullNameSql() {
+		assertEquals("concat_ws(' ', first_name, last_name)", EtlTransforms.fullNameSql("first_name", "last_name"));
+	}
+
+	@Test
+	void ageGroupSql() {
+		String age = "date_part('year', age(DATE '2025-06-15', date_of_birth))";
+		assertEquals("CASE WHEN date_of_birth IS NULL THEN NULL WHEN " + age + " <= 21 THEN '18-21' WHEN " + age + " <= 25 THEN '22-25' ELSE '26+' END",
+				EtlTransforms.ageGroupSql("date_of_birth", "DATE '2025-06-15'"));
+	}
+
+	@Test
+	void passedFlagSql() {
+		assertEquals("CASE WHEN lower(se.status) = 'passed' THEN 1 ELSE 0 END", EtlTransforms.passedFlagSql("se.status"));
+	}
+}
@@ -0,0 +1,107 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+class FactSnapshotTests {
+
+	private static FactSnapshot.Builder dimensions(int expectedRows) {
+		FactSnapshot.Builder builder = new FactSnapshot.Builder(expectedRows);
+		builder.dimension(SnapshotDimension.DATE, 20240901, "2024", "9", "SEPTEMBER", "3", "2024/2025", "Semester 1");
+		builder.dimension(SnapshotDimension.DATE, 20250201, "2025", "2", "FEBRUARY", "1", "2024/2025", "Semester 2");
+		builder.dimension(SnapshotDimension.STUDENT, 1, "Ann Lee", "F", "UK", "18-21");
+		builder.dimension(SnapshotDimension.STUDENT, 2, "Bo Chen", "M", "China", "22-25");
+		builder.dimension(SnapshotDimension.STUDENT, 3, "Cy Diaz", "M", "UK", "26+");
+		builder.dimension(SnapshotDimension.COURSE, 10, "CS101", "Programming", "Undergraduate");
+		builder.dimension(SnapshotDimension.COURSE, 11, "MA101", "Calculus", "Undergraduate");
+		builder.dimension(SnapshotDimension.DEPARTMENT, 100, "Computing", "Dr A");
+		builder.dimension(SnapshotDimension.DEPARTMENT, 101, "Mathematics", "Dr B");
+		builder.dimension(SnapshotDimension.LECTURER, 7, "Prof X");
+		return builder;
+	}
+
+	private static FactSnapshot sample() {
+		return dimensions(4)
+			.fact(20240901, 1, 10, 100, 7, new BigDecimal("70.00"), new BigDecimal("1000.00"), true)
+			.fact(20240901, 2, 10, 100, 7, new BigDecimal("35.50"), new BigDecimal("1000.00"), false)
+			.fact(20250201, 3, 10, 100, 7, null, new BigDecimal("1000.00"), false)
+			.fact(20250201, 1, 11, 101, 7, new BigDecimal("81.25"), new BigDecimal("500.50"), true)
+			.build();
+	}
+
+	@Test
+	void groupsAndAggregatesByDimensionAttribute() {
+		List<SnapshotGroup> groups = sample().query(SnapshotQuery.groupBy("department.department_name"), Runnable::run, 1).stream()
+			.sorted(Comparator.comparing(group -> group.key(0)))
+			.toList();
+
+		assertEquals(2, groups.size());
+		SnapshotGroup computing = groups.get(0);
+		assertEquals("Computing", computing.key(0));
+		assertEquals(3, computing.count());
+		assertEquals(1, computing.passed());
+		assertEquals(2, computing.graded());
+		assertEquals(new BigDecimal("52.75"), computing.averageGrade());
+		assertEquals(new BigDecimal("70.00"), computing.passedAverageGrade());
+		assertEquals(new BigDecimal("3000.00"), computing.tuition());
+		assertEquals(new BigDecimal("500.50"), groups.get(1).tuition());
+	}
+
+	@Test
+	void filtersRestrictRowsBeforeGrouping() {
+		SnapshotQuery query = SnapshotQuery.groupBy("course.course_title").where("student.nationality", "UK").gradedOnly();
+		List<SnapshotGroup> groups = sample().query(query, Runnable::run, 1).stream()
+			.sorted(Comparator.comparing(group -> group.key(0)))
+			.toList();
+
+		assertEquals(List.of("Calculus", "Programming"), groups.stream().map(group -> group.key(0)).toList());
+		assertEquals(1, groups.get(1).count());
+		SnapshotQuery nothingMatches = SnapshotQuery.groupBy("course.course_title").where("date.semester", "Semester 2").where("course.course_code", "CS101").passedOnly();
+		assertEquals(List.of(), sample().query(nothingMatches, Runnable::run, 1));
+	}
+
+	@Test
+	void countsDimensionRowsLargestFirst() {
+		Map<String, Long> nationalities = sample().countDimension("student.nationality");
+		assertEquals(List.of("UK", "China"), List.copyOf(nationalities.keySet()));
+		assertEquals(2L, nationalities.get("UK"));
+	}
+
+	@Test
+	void parallelScanMatchesSingleThreadedScan() {
+		FactSnapshot.Builder builder = dimensions(0);
+		int rows = 300_000;
+		for (int i = 0; i < rows; i++) {
+			builder.fact(i % 2 == 0 ? 20240901 : 20250201, 1 + i % 3, 10 + i % 2, 100 + i % 2, 7,
+				BigDecimal.valueOf(i % 10_000, 2), BigDecimal.TEN, i % 5 == 0);
+		}
+		FactSnapshot snapshot = builder.build();
+		SnapshotQuery query = SnapshotQuery.groupBy("date.year", "student.full_name");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Comparator<SnapshotGroup> byKeys = Comparator.comparing(group -> String.join("|", group.keys()));
+			List<SnapshotGroup> single = snapshot.query(query, Runnable::run, 1).stream().sorted(byKeys).toList();
+			List<SnapshotGroup> parallel = snapshot.query(query, executor, 4).stream().sorted(byKeys).toList();
+			assertEquals(single, parallel);
+			assertEquals(rows, parallel.stream().mapToLong(SnapshotGroup::count).sum());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void rejectsUnknownAttributesAndKeys() {
+		assertThrows(IllegalArgumentException.class, () -> sample().query(SnapshotQuery.groupBy("department.budget"), Runnable::run, 1));
+		assertThrows(IllegalStateException.class, () -> dimensions(1).fact(20240901, 99, 10, 100, 7, null, null, false));
+	}
+}
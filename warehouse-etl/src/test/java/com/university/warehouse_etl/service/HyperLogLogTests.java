@@ -0,0 +1,80 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTests {
+
+	// SplitMix64 finalizer, standing in for the warehouse's hashtextextended()
+	private static long hash(long value) {
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static HyperLogLog sketchOf(int from, int to) {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = from; i < to; i++) {
+			sketch.add(hash(i));
+		}
+		return sketch;
+	}
+
+	private static void assertWithinError(long expected, long estimate) {
+		// Four standard errors
+		assertTrue(Math.abs(estimate - expected) <= 4 * HyperLogLog.standardError() * expected, () -> "expected about " + expected + " but was " + estimate);
+	}
+
+	@Test
+	void estimatesSmallAndLargeCardinalities() {
+		assertEquals(0, new HyperLogLog().estimate());
+		assertWithinError(100, sketchOf(0, 100).estimate());
+		assertWithinError(5_000, sketchOf(0, 5_000).estimate());
+		assertWithinError(1_000_000, sketchOf(0, 1_000_000).estimate());
+	}
+
+	@Test
+	void duplicatesDoNotCount() {
+		HyperLogLog sketch = sketchOf(0, 1_000);
+		for (int i = 0; i < 1_000; i++) {
+			sketch.add(hash(i));
+		}
+		assertArrayEquals(sketchOf(0, 1_000).toBytes(), sketch.toBytes());
+	}
+
+	@Test
+	void mergeCountsTheUnion() {
+		HyperLogLog merged = sketchOf(0, 60_000).merge(sketchOf(40_000, 100_000));
+		assertArrayEquals(sketchOf(0, 100_000).toBytes(), merged.toBytes());
+		assertWithinError(100_000, merged.estimate());
+	}
+
+	@Test
+	void rankCountsLeadingZerosAboveTheIndex() {
+		HyperLogLog sketch = new HyperLogLog();
+		sketch.add(5);
+		sketch.add(-1L);
+		HyperLogLog expected = new HyperLogLog();
+		// 5 leaves no bits above the index: the maximum rank
+		expected.offer(5, HyperLogLog.MAX_RANK);
+		expected.offer(HyperLogLog.REGISTERS - 1, 1);
+		assertArrayEquals(expected.toBytes(), sketch.toBytes());
+	}
+
+	@Test
+	void roundTripsSparseAndDense() {
+		HyperLogLog sparse = sketchOf(0, 50);
+		byte[] sparseBytes = sparse.toBytes();
+		assertTrue(sparseBytes.length <= 2 + 50 * 3, "50 students fill 50 registers at most");
+		assertArrayEquals(sparseBytes, HyperLogLog.fromBytes(sparseBytes).toBytes());
+
+		HyperLogLog dense = sketchOf(0, 100_000);
+		byte[] denseBytes = dense.toBytes();
+		assertEquals(2 + HyperLogLog.REGISTERS, denseBytes.length);
+		assertArrayEquals(denseBytes, HyperLogLog.fromBytes(denseBytes).toBytes());
+	}
+}
@@ -0,0 +1,60 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class IntKeyMapTests {
+
+	@Test
+	void matchesHashMapForSparseKeys() {
+		SplittableRandom random = new SplittableRandom(42);
+		Map<Integer, Integer> expected = new HashMap<>();
+		IntKeyMap keys = new IntKeyMap();
+		for (int i = 0; i < 50_000; i++) {
+			// Integer.MIN_VALUE marks free slots and is rejected as a key
+			int naturalId = random.nextInt(Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+			int surrogate = i + 1;
+			expected.put(naturalId, surrogate);
+			keys.put(naturalId, surrogate);
+		}
+
+		assertEquals(expected.size(), keys.size());
+		expected.forEach((naturalId, surrogate) -> assertEquals(surrogate, keys.get(naturalId)));
+		assertEquals(expected.size(), keys.compact().size());
+	}
+
+	@Test
+	void rejectsTheFreeSlotSentinelAsKey() {
+		IntKeyMap keys = new IntKeyMap();
+		keys.put(1, 10);
+
+		assertThrows(IllegalArgumentException.class, () -> keys.put(Integer.MIN_VALUE, 11));
+		assertEquals(IntKeyMap.MISSING, keys.get(Integer.MIN_VALUE));
+		assertEquals(1, keys.size());
+	}
+
+	@Test
+	void compactsDenseKeysAndStaysWritable() {
+		IntKeyMap keys = new IntKeyMap();
+		for (int id = 1; id <= 1000; id++) {
+			keys.put(id, id + 500);
+		}
+		keys.compact();
+
+		assertEquals(501, keys.get(1));
+		assertEquals(1500, keys.get(1000));
+		assertEquals(IntKeyMap.MISSING, keys.get(0));
+		assertEquals(IntKeyMap.MISSING, keys.get(Integer.MIN_VALUE + 1));
+
+		keys.put(5000, 7);
+		assertEquals(7, keys.get(5000));
+		assertEquals(501, keys.get(1));
+		assertEquals(1001, keys.size());
+	}
+}
@@ -0,0 +1,50 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.Test;
+
+class PartitionManagerTests {
+
+	@Test
+	void monthlyPartitionNameIsZeroPadded() {
+		assertEquals("fact_payment_y2024m09", PartitionManager.monthlyPartitionName("fact_payment", YearMonth.of(2024, 9)));
+	}
+
+	@Test
+	void monthlyPartitionCoversOneUtcMonth() {
+		assertEquals("CREATE TABLE IF NOT EXISTS fact_payment_y2024m02 PARTITION OF fact_payment " +
+				"FOR VALUES FROM ('2024-02-01 00:00:00+00') TO ('2024-03-01 00:00:00+00')",
+				PartitionManager.monthlyPartitionDdl("fact_payment", YearMonth.of(2024, 2)));
+	}
+
+	@Test
+	void decemberPartitionEndsInNextYear() {
+		assertEquals("CREATE TABLE IF NOT EXISTS fact_payment_y2024m12 PARTITION OF fact_payment " +
+				"FOR VALUES FROM ('2024-12-01 00:00:00+00') TO ('2025-01-01 00:00:00+00')",
+				PartitionManager.monthlyPartitionDdl("fact_payment", YearMonth.of(2024, 12)));
+	}
+
+	@Test
+	void academicYearPartitionHoldsBothSemesters() {
+		assertEquals("FOR VALUES FROM (20240901) TO (20250901)", PartitionManager.academicYearBounds(2024));
+		int from = PartitionManager.academicYearFrom(2024);
+		int to = PartitionManager.academicYearFrom(2025);
+		int semesterOne = EtlTransforms.enrollmentDateKey(2024, 1);
+		int semesterTwo = EtlTransforms.enrollmentDateKey(2024, 2);
+		assertTrue(semesterOne >= from && semesterOne < to);
+		assertTrue(semesterTwo >= from && semesterTwo < to);
+	}
+
+	@Test
+	void partitionObjectNameLeavesRoomForRebuildSuffix() {
+		assertEquals("fact_enrollment_ay2024_idx_fact_student_key",
+				PartitionManager.partitionObjectName(PartitionManager.academicYearPartitionName("fact_enrollment", 2024), "idx_fact_student_key"));
+		String longName = PartitionManager.partitionObjectName("fact_enrollment_ay2024", "x".repeat(63));
+		assertEquals(58, longName.length());
+		assertEquals(63, ShadowTables.shadowName(longName).length());
+	}
+}
@@ -0,0 +1,55 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class PivotPlannerTests {
+
+	private final PivotPlanner planner = new PivotPlanner(100);
+
+	@Test
+	void joinsOnlyTheDimensionsTheRequestUses() {
+		PivotRequest request = new PivotRequest(List.of("count", "pass_rate"), List.of("student.nationality"),
+			Map.of("course.level", List.of("Undergraduate")));
+		String sql = planner.compile(request).sql();
+
+		assertTrue(sql.contains("JOIN dim_student d_student ON f.student_key = d_student.student_key"));
+		assertTrue(sql.contains("JOIN dim_course d_course ON f.course_key = d_course.course_key"));
+		assertFalse(sql.contains("dim_department"));
+		assertFalse(sql.contains("dim_date"));
+		assertTrue(sql.contains("WHERE CAST(d_course.level AS text) = ANY(?)"));
+		assertTrue(sql.endsWith("GROUP BY 1 ORDER BY 1 LIMIT ?"));
+	}
+
+	@Test
+	void reusesThePlanForTheSameShapeWithOtherValues() {
+		PivotRequest computing = new PivotRequest(List.of("count"), List.of("date.year"), Map.of("department.department_name", List.of("Computing")));
+		PivotRequest twoDepartments = computing.withFilter("department.department_name", List.of("Mathematics", "Physics"));
+
+		assertSame(planner.compile(computing), planner.compile(twoDepartments));
+	}
+
+	@Test
+	void normalizesFiltersSoEquivalentRequestsAreEqual() {
+		PivotRequest first = new PivotRequest(List.of("count"), List.of(), Map.of("student.gender", List.of("M", "F", "M")));
+		PivotRequest second = new PivotRequest(List.of("count"), null, Map.of("student.gender", List.of("F", "M")));
+
+		assertEquals(first, second);
+	}
+
+	@Test
+	void rejectsAnythingOutsideTheWhitelist() {
+		assertThrows(IllegalArgumentException.class, () -> planner.compile(new PivotRequest(List.of(), List.of(), Map.of())));
+		assertThrows(IllegalArgumentException.class, () -> planner.compile(new PivotRequest(List.of("count; DROP TABLE x"), List.of(), Map.of())));
+		assertThrows(IllegalArgumentException.class, () -> planner.compile(new PivotRequest(List.of("count"), List.of("student.password"), Map.of())));
+		assertThrows(IllegalArgumentException.class, () -> planner.compile(new PivotRequest(List.of("count"), List.of(), Map.of("course.level", List.of()))));
+	}
+}
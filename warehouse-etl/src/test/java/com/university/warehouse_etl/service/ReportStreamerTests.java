@@ -0,0 +1,85 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ReportStreamerTests {
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	@Test
+	void csvFieldLeavesPlainValuesUnquoted() {
+		assertEquals("Computer Science", ReportStreamer.csvField("Computer Science"));
+		assertEquals("72.50", ReportStreamer.csvField("72.50"));
+	}
+
+	@Test
+	void csvFieldQuotesDelimitersAndEscapesQuotes() {
+		assertEquals("\"Smith, Jane\"", ReportStreamer.csvField("Smith, Jane"));
+		assertEquals("\"The \"\"Intro\"\" course\"", ReportStreamer.csvField("The \"Intro\" course"));
+		assertEquals("\"line one\nline two\"", ReportStreamer.csvField("line one\nline two"));
+	}
+
+	@Test
+	void emptyCsvExportStillHasItsHeader() throws Exception {
+		ReportStreamer.RowWriter writer = ReportStreamer.rowWriter(ReportFormat.CSV, out, new ObjectMapper());
+		writer.start(metaData("course_code", "pass_rate"));
+		writer.finish();
+
+		assertEquals("course_code,pass_rate\r\n", written());
+	}
+
+	@Test
+	void completeJsonExportIsClosed() throws Exception {
+		ReportStreamer.RowWriter writer = ReportStreamer.rowWriter(ReportFormat.JSON, out, new ObjectMapper());
+		writer.start(metaData("course_code"));
+		writer.row(row("CS101"));
+		writer.finish();
+
+		assertEquals("[{\"course_code\":\"CS101\"}]", written());
+	}
+
+	@Test
+	void abortedJsonExportIsNotClosed() throws Exception {
+		ReportStreamer.RowWriter writer = ReportStreamer.rowWriter(ReportFormat.JSON, out, new ObjectMapper());
+		writer.start(metaData("course_code"));
+		writer.row(row("CS101"));
+		writer.flush();
+		// The query fails here, so finish() is never called
+
+		assertEquals("[{\"course_code\":\"CS101\"}", written());
+	}
+
+	private String written() {
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private static ResultSetMetaData metaData(String... labels) {
+		return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+			(proxy, method, args) -> switch (method.getName()) {
+				case "getColumnCount" -> labels.length;
+				case "getColumnLabel" -> labels[(int) args[0] - 1];
+				default -> throw new UnsupportedOperationException(method.getName());
+			});
+	}
+
+	// The current row of a result set positioned on it
+	private static ResultSet row(Object... values) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+			(proxy, method, args) -> {
+				if (method.getName().equals("getObject") && args.length == 1 && args[0] instanceof Integer column) {
+					return values[column - 1];
+				}
+				throw new UnsupportedOperationException(method.getName());
+			});
+	}
+}
@@ -0,0 +1,161 @@
+package com.university.warehouse_etl.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ShadowTablesTests {
+
+	private static final Map<String, Object> STUDENT_PKEY = Map.of("name", "dim_student_pkey", "definition", "PRIMARY KEY (student_key)");
+	private static final Map<String, Object> STUDENT_ID_INDEX = Map.of("name", "idx_dim_student_id",
+			"definition", "CREATE UNIQUE INDEX idx_dim_student_id ON public.dim_student USING btree (student_id)");
+	private static final Map<String, Object> ENROLLMENT_STUDENT_FK = Map.of("table_name", "fact_enrollment", "conname", "fk_student",
+			"definition", "FOREIGN KEY (student_key) REFERENCES dim_student(student_key)", "referenced", "dim_student");
+	private static final Map<String, Object> STUDENT_KEY_SEQUENCE = Map.of("attname", "student_key", "sequence_name", "public.dim_student_student_key_seq");
+
+	private final List<String> statements = new ArrayList<>();
+	private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate(statements);
+	private final ShadowTables shadowTables = new ShadowTables(jdbcTemplate, new RecordingTransactionTemplate(statements));
+
+	@Test
+	void prepareCreatesAnEmptyCopyKeepingDefaults() {
+		assertEquals("dim_student_next", shadowTables.prepare("dim_student"));
+		assertEquals(List.of(
+				"DROP TABLE IF EXISTS dim_student_next",
+				"CREATE TABLE dim_student_next (LIKE dim_student INCLUDING DEFAULTS)"), statements);
+	}
+
+	@Test
+	void buildIndexesCopiesKeysAndIndexesUnderShadowNames() {
+		jdbcTemplate.answer("contype IN ('p', 'u')", STUDENT_PKEY);
+		jdbcTemplate.answer("pg_get_indexdef", STUDENT_ID_INDEX);
+
+		shadowTables.buildIndexes("dim_student");
+
+		assertEquals(List.of(
+				"ALTER TABLE dim_student_next ADD CONSTRAINT dim_student_pkey_next PRIMARY KEY (student_key)",
+				"CREATE UNIQUE INDEX idx_dim_student_id_next ON dim_student_next USING btree (student_id)",
+				"ANALYZE dim_student_next"), statements);
+	}
+
+	@Test
+	void swapRenamesInOneTransactionAndValidatesForeignKeysAfterCommit() {
+		jdbcTemplate.answer("contype IN ('p', 'u')", STUDENT_PKEY);
+		jdbcTemplate.answer("pg_get_indexdef", STUDENT_ID_INDEX);
+		jdbcTemplate.answer("contype = 'f'", ENROLLMENT_STUDENT_FK);
+		jdbcTemplate.answer("pg_get_serial_sequence", STUDENT_KEY_SEQUENCE);
+
+		shadowTables.swap(List.of("dim_student"), () -> statements.add("-- after swap"));
+
+		assertEquals(List.of(
+				"BEGIN",
+				"ALTER TABLE fact_enrollment DROP CONSTRAINT fk_student",
+				"ALTER SEQUENCE public.dim_student_student_key_seq OWNED BY dim_student_next.student_key",
+				"DROP TABLE dim_student",
+				"ALTER TABLE dim_student_next RENAME TO dim_student",
+				"ALTER TABLE dim_student RENAME CONSTRAINT dim_student_pkey_next TO dim_student_pkey",
+				"ALTER INDEX idx_dim_student_id_next RENAME TO idx_dim_student_id",
+				"ALTER TABLE fact_enrollment ADD CONSTRAINT fk_student FOREIGN KEY (student_key) REFERENCES dim_student(student_key) NOT VALID",
+				"-- after swap",
+				"COMMIT",
+				"ALTER TABLE fact_enrollment VALIDATE CONSTRAINT fk_student"), statements);
+	}
+
+	@Test
+	void failedSwapRollsBackWithoutValidating() {
+		jdbcTemplate.answer("contype = 'f'", ENROLLMENT_STUDENT_FK);
+
+		assertThrows(IllegalStateException.class, () -> shadowTables.swap(List.of("dim_student"), () -> {
+			throw new IllegalStateException("watermarks");
+		}));
+
+		assertEquals("ROLLBACK", statements.get(statements.size() - 1));
+		assertEquals(0, statements.stream().filter(statement -> statement.contains("VALIDATE")).count());
+	}
+
+	@Test
+	void discardDropsOnlyTheCopies() {
+		shadowTables.discard(List.of("dim_student", "dim_course"));
+
+		assertEquals(List.of("DROP TABLE IF EXISTS dim_student_next", "DROP TABLE IF EXISTS dim_course_next"), statements);
+	}
+
+	@Test
+	void shadowNameAppendsSuffix() {
+		assertEquals("dim_student_pkey_next", ShadowTables.shadowName("dim_student_pkey"));
+	}
+
+	@Test
+	void shadowNameStaysWithinIdentifierLimit() {
+		String longName = "x".repeat(63);
+		String shadowName = ShadowTables.shadowName(longName);
+		assertEquals(63, shadowName.length());
+		assertEquals("x".repeat(58) + "_next", shadowName);
+	}
+
+	// Records every statement and answers catalog queries from rows keyed by a fragment of their SQL
+	private static final class RecordingJdbcTemplate extends JdbcTemplate {
+
+		private final List<String> statements;
+		private final Map<String, List<Map<String, Object>>> answers = new LinkedHashMap<>();
+
+		RecordingJdbcTemplate(List<String> statements) {
+			this.statements = statements;
+		}
+
+		void answer(String sqlFragment, Map<String, Object> row) {
+			answers.computeIfAbsent(sqlFragment, fragment -> new ArrayList<>()).add(row);
+		}
+
+		@Override
+		public void execute(String sql) {
+			statements.add(sql);
+		}
+
+		@Override
+		public List<Map<String, Object>> queryForList(String sql) {
+			return queryForList(sql, new Object[0]);
+		}
+
+		@Override
+		public List<Map<String, Object>> queryForList(String sql, Object... args) {
+			return answers.entrySet().stream()
+				.filter(answer -> sql.contains(answer.getKey()))
+				.findFirst()
+				.map(Map.Entry::getValue)
+				.orElse(List.of());
+		}
+	}
+
+	private static final class RecordingTransactionTemplate extends TransactionTemplate {
+
+		private final List<String> statements;
+
+		RecordingTransactionTemplate(List<String> statements) {
+			this.statements = statements;
+		}
+
+		@Override
+		public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+			statements.add("BEGIN");
+			try {
+				T result = action.doInTransaction(null);
+				statements.add("COMMIT");
+				return result;
+			} catch (RuntimeException e) {
+				statements.add("ROLLBACK");
+				throw e;
+			}
+		}
+	}
+}